@@ -1,11 +1,14 @@
 package iuh.fit.se.customer_service.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import iuh.fit.se.customer_service.model.Customer;
 import iuh.fit.se.customer_service.service.CustomerService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -13,16 +16,37 @@ import java.util.List;
 @RequestMapping("/customers")
 public class CustomerController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              ObjectMapper objectMapper) {
         this.customerService = customerService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public ResponseEntity<List<Customer>> getAllCustomers() {
-        return ResponseEntity.ok(customerService.getAllCustomers());
+    public ResponseEntity<List<Customer>> getAllCustomers(@RequestParam(required = false) Long after,
+                                                          @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<Customer> customers = customerService.getCustomers(after, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (customers.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(customers.get(customers.size() - 1).getId()));
+        }
+        return response.body(customers);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllCustomers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> customerService.writeAllCustomers(
+                        objectMapper.writer().withRootValueSeparator("\n").writeValues(outputStream)));
     }
 
     @GetMapping("/{id}")
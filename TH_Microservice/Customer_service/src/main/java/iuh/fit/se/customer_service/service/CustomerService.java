@@ -1,25 +1,47 @@
 package iuh.fit.se.customer_service.service;
 
+import com.fasterxml.jackson.databind.SequenceWriter;
 import iuh.fit.se.customer_service.model.Customer;
 import iuh.fit.se.customer_service.repository.CustomerRepository;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class CustomerService {
 
     private final CustomerRepository customerRepository;
+    private final EntityManager entityManager;
 
     @Autowired
-    public CustomerService(CustomerRepository customerRepository) {
+    public CustomerService(CustomerRepository customerRepository,
+                           EntityManager entityManager) {
         this.customerRepository = customerRepository;
+        this.entityManager = entityManager;
     }
 
-    public List<Customer> getAllCustomers() {
-        return customerRepository.findAll();
+    public List<Customer> getCustomers(Long afterId, int limit) {
+        return customerRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId, Limit.of(limit));
+    }
+
+    // NDJSON export over a read-only cursor; a customer is detached once written
+    @Transactional(readOnly = true)
+    public void writeAllCustomers(SequenceWriter lines) throws IOException {
+        try (lines; Stream<Customer> customers = customerRepository.streamAllByOrderByIdAsc()) {
+            for (Iterator<Customer> iterator = customers.iterator(); iterator.hasNext(); ) {
+                Customer customer = iterator.next();
+                lines.write(customer);
+                entityManager.detach(customer);
+            }
+        }
     }
 
     public Optional<Customer> getCustomerById(Long id) {
@@ -0,0 +1,15 @@
+-- Baseline schema. Every statement is idempotent, so it also applies to a schema
+-- that ddl-auto created before Flyway took over (baseline-version 0).
+
+CREATE SEQUENCE IF NOT EXISTS customer_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS customer (
+    id      bigint PRIMARY KEY,
+    name    varchar(255),
+    email   varchar(255),
+    phone   varchar(255),
+    address varchar(255)
+);
+
+-- Rows written with the former identity ids may be ahead of the sequences
+SELECT setval('customer_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM customer) + 50, (SELECT last_value FROM customer_seq)));
@@ -1,18 +1,20 @@
 package iuh.fit.se.order_service.client;
 
-
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
-@FeignClient(name = "product-service")
+import java.util.List;
+
+@FeignClient(name = "product-service", url = "${app.product-service.url}")
 public interface ProductClient {
 
     @GetMapping("/products/{id}")
-    ProductDto getProduct(@PathVariable("id") Long id);
+    ResponseEntity<ProductDto> getProductById(@PathVariable Long id);
 
-    @PatchMapping("/products/{id}/stock")
-    ProductDto updateStock(@PathVariable("id") Long id, @RequestBody StockUpdateRequest request);
+    @PostMapping("/products/batch")
+    ResponseEntity<List<ProductDto>> getProductsByIds(@RequestBody List<Long> ids);
 }
@@ -0,0 +1,35 @@
+package iuh.fit.se.order_service.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    public static final String CLIENT_CALL_EXECUTOR = "clientCallExecutor";
+
+    // Runs the parallel customer and product lookups of createOrder.
+    // One virtual thread per call when spring.threads.virtual.enabled is on, otherwise a dedicated bounded pool.
+    @Bean(CLIENT_CALL_EXECUTOR)
+    public AsyncTaskExecutor clientCallExecutor(Environment environment,
+                                                @Value("${app.async.pool-size:64}") int poolSize,
+                                                @Value("${app.async.queue-capacity:1000}") int queueCapacity) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("order-client-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("order-client-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        return executor;
+    }
+}
@@ -0,0 +1,11 @@
+package iuh.fit.se.order_service.config;
+
+import iuh.fit.se.order_service.OrderServiceApplication;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.context.annotation.Configuration;
+
+// Kept off the application class so that sliced tests such as @DataJpaTest do not create the Feign clients
+@Configuration
+@EnableFeignClients(basePackageClasses = OrderServiceApplication.class)
+public class FeignConfig {
+}
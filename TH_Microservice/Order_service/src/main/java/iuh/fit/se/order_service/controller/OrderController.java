@@ -1,12 +1,14 @@
 package iuh.fit.se.order_service.controller;
 
-
+import com.fasterxml.jackson.databind.ObjectMapper;
 import iuh.fit.se.order_service.model.Order;
 import iuh.fit.se.order_service.service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -14,16 +16,37 @@ import java.util.List;
 @RequestMapping("/orders")
 public class OrderController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final OrderService orderService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService,
+                           ObjectMapper objectMapper) {
         this.orderService = orderService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public ResponseEntity<List<Order>> getAllOrders() {
-        return ResponseEntity.ok(orderService.getAllOrders());
+    public ResponseEntity<List<Order>> getAllOrders(@RequestParam(required = false) Long after,
+                                                    @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<Order> orders = orderService.getOrders(after, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (orders.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(orders.get(orders.size() - 1).getId()));
+        }
+        return response.body(orders);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllOrders() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> orderService.writeAllOrders(
+                        objectMapper.writer().withRootValueSeparator("\n").writeValues(outputStream)));
     }
 
     @GetMapping("/{id}")
@@ -51,9 +74,14 @@ public class OrderController {
 
     @PutMapping("/{id}/status")
     public ResponseEntity<Order> updateOrderStatus(@PathVariable Long id, @RequestParam String status) {
-        return orderService.updateOrderStatus(id, status)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+        try {
+            return orderService.updateOrderStatus(id, status)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (RuntimeException e) {
+            // The order is closed; the caller must not treat it as updated
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
 
     @PutMapping("/{id}/cancel")
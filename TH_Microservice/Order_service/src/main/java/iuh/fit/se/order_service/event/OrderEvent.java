@@ -0,0 +1,25 @@
+package iuh.fit.se.order_service.event;
+
+import iuh.fit.se.order_service.model.Order;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * order-created / order-updated / order-cancelled as the consumers read them: the order's header and,
+ * per line, the product, quantity and price. Encoded with {@link EventCodec}.
+ */
+public record OrderEvent(long orderId, long customerId, LocalDateTime orderDate, String status, double totalAmount,
+                         List<Item> items) {
+
+    public record Item(long productId, int quantity, double price) {
+    }
+
+    public static OrderEvent of(Order order) {
+        List<Item> items = order.getItems().stream()
+                .map(item -> new Item(item.getProductId(), item.getQuantity(), item.getPrice() == null ? 0.0 : item.getPrice()))
+                .toList();
+        return new OrderEvent(order.getId(), order.getCustomerId(), order.getOrderDate(), order.getStatus(),
+                order.getTotalAmount() == null ? 0.0 : order.getTotalAmount(), items);
+    }
+}
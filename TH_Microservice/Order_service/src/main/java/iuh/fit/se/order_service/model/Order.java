@@ -5,27 +5,32 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = @Index(name = "idx_orders_customer_id", columnList = "customerId"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     private Long customerId;
     private LocalDateTime orderDate;
     private String status;
 
+    // order_id is not null, so the batched item inserts write it instead of one update per item.
+    // Lazy loads outside the fetch-joined queries initialize the items of up to 100 orders at once.
     @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
-    @JoinColumn(name = "order_id")
+    @JoinColumn(name = "order_id", nullable = false)
+    @BatchSize(size = 100)
     private List<OrderItem> items = new ArrayList<>();
 
     private Double totalAmount;
@@ -1,12 +1,43 @@
 package iuh.fit.se.order_service.repository;
 
 import iuh.fit.se.order_service.model.Order;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+// Orders are always rendered with their items, so the read queries fetch both in one statement
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    @Override
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findById(Long id);
+
+    @EntityGraph(attributePaths = "items")
     List<Order> findByCustomerId(Long customerId);
+
+    // A limit on a collection fetch would be applied in memory, so pages select their ids first
+    @Query("SELECT o.id FROM Order o WHERE o.id > :afterId ORDER BY o.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @EntityGraph(attributePaths = "items")
+    List<Order> findByIdInOrderByIdAsc(Collection<Long> ids);
+
+    @EntityGraph(attributePaths = "items")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Order> streamAllByOrderByIdAsc();
 }
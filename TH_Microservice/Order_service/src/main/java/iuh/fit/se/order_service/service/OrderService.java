@@ -1,39 +1,92 @@
 package iuh.fit.se.order_service.service;
 
-
+import com.fasterxml.jackson.databind.SequenceWriter;
 import iuh.fit.se.order_service.client.CustomerClient;
 import iuh.fit.se.order_service.client.ProductClient;
+import iuh.fit.se.order_service.client.ProductDto;
+import iuh.fit.se.order_service.config.AsyncConfig;
+import iuh.fit.se.order_service.event.OrderEvent;
+import iuh.fit.se.order_service.model.Order;
+import iuh.fit.se.order_service.model.OrderItem;
 import iuh.fit.se.order_service.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class OrderService {
 
+    private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
+
     private final OrderRepository orderRepository;
     private final ProductClient productClient;
     private final CustomerClient customerClient;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
+    private final Executor clientCallExecutor;
+    private final Duration validationTimeout;
+    private final EntityManager entityManager;
 
     @Autowired
     public OrderService(OrderRepository orderRepository,
                         ProductClient productClient,
                         CustomerClient customerClient,
-                        KafkaTemplate<String, Object> kafkaTemplate) {
+                        OutboxService outboxService,
+                        @Qualifier(AsyncConfig.CLIENT_CALL_EXECUTOR) Executor clientCallExecutor,
+                        @Value("${app.order.validation-timeout:3s}") Duration validationTimeout,
+                        EntityManager entityManager) {
         this.orderRepository = orderRepository;
         this.productClient = productClient;
         this.customerClient = customerClient;
-        this.kafkaTemplate = kafkaTemplate;
+        this.outboxService = outboxService;
+        this.clientCallExecutor = clientCallExecutor;
+        this.validationTimeout = validationTimeout;
+        this.entityManager = entityManager;
     }
 
-    public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+    // Two statements per page whatever its size: the page of ids, then those orders with their items
+    public List<Order> getOrders(Long afterId, int limit) {
+        List<Long> ids = orderRepository.findIdsAfter(afterId == null ? 0L : afterId, Limit.of(limit));
+        return ids.isEmpty() ? List.of() : orderRepository.findByIdInOrderByIdAsc(ids);
+    }
+
+    // NDJSON export: one fetch-joined query brings each order with its items, and an order leaves the
+    // persistence context as soon as its line is written, so the export never holds more than one order
+    @Transactional(readOnly = true)
+    public void writeAllOrders(SequenceWriter lines) throws IOException {
+        try (lines; Stream<Order> orders = orderRepository.streamAllByOrderByIdAsc()) {
+            for (Iterator<Order> iterator = orders.iterator(); iterator.hasNext(); ) {
+                Order order = iterator.next();
+                lines.write(order);
+                entityManager.detach(order);
+            }
+        }
     }
 
     public Optional<Order> getOrderById(Long id) {
@@ -45,12 +98,16 @@ public class OrderService {
     }
 
     @Transactional
+    @SuppressWarnings("unchecked")
     public Order createOrder(Order order) {
-        // Validate customer exists
-        var customerResponse = customerClient.getCustomerById(order.getCustomerId());
-        if (!customerResponse.getStatusCode().is2xxSuccessful()) {
-            throw new RuntimeException("Customer not found");
-        }
+        Map<Long, Integer> quantities = aggregateQuantities(order.getItems());
+
+        // Validate the customer and fetch all products of the order in parallel, under one deadline
+        CompletionService<Object> validations = new ExecutorCompletionService<>(clientCallExecutor);
+        Future<Object> customerCheck = validations.submit(() -> validateCustomer(order.getCustomerId()));
+        Future<Object> productLoad = validations.submit(() -> loadProducts(new ArrayList<>(quantities.keySet())));
+        Map<Future<Object>, Object> results = awaitValidations(validations, List.of(customerCheck, productLoad));
+        Map<Long, ProductDto> products = (Map<Long, ProductDto>) results.get(productLoad);
 
         // Set order date and initial status
         order.setOrderDate(LocalDateTime.now());
@@ -59,42 +116,41 @@ public class OrderService {
         // Calculate total and validate products
         double total = 0.0;
         for (OrderItem item : order.getItems()) {
-            var productResponse = productClient.getProductById(item.getProductId());
-            if (!productResponse.getStatusCode().is2xxSuccessful()) {
+            ProductDto product = products.get(item.getProductId());
+            if (product == null) {
                 throw new RuntimeException("Product not found: " + item.getProductId());
             }
-
-            ProductDto product = productResponse.getBody();
-            if (product.getStockQuantity() < item.getQuantity()) {
+            if (product.getStockQuantity() < quantities.get(item.getProductId())) {
                 throw new RuntimeException("Insufficient stock for product: " + item.getProductId());
             }
 
             // Update product price from current price
             item.setPrice(product.getPrice());
             total += item.getPrice() * item.getQuantity();
-
-            // Update stock
-            productClient.updateStock(item.getProductId(), item.getQuantity());
         }
 
         order.setTotalAmount(total);
         Order savedOrder = orderRepository.save(order);
 
-        // Send order created event
-        kafkaTemplate.send("order-created", savedOrder);
+        // Send order created event; inventory-service reserves the stock when it consumes it
+        outboxService.publish("order-created", String.valueOf(savedOrder.getId()), OrderEvent.of(savedOrder));
 
         return savedOrder;
     }
 
+    // A rejected or cancelled order is closed: it cannot be paid or shipped any more
     @Transactional
     public Optional<Order> updateOrderStatus(Long id, String status) {
         return orderRepository.findById(id)
                 .map(existingOrder -> {
+                    if (isClosed(existingOrder) && !status.equals(existingOrder.getStatus())) {
+                        throw new RuntimeException("Order " + id + " is " + existingOrder.getStatus());
+                    }
                     existingOrder.setStatus(status);
                     Order updatedOrder = orderRepository.save(existingOrder);
 
                     // Send order updated event
-                    kafkaTemplate.send("order-updated", updatedOrder);
+                    outboxService.publish("order-updated", String.valueOf(id), OrderEvent.of(updatedOrder));
 
                     return updatedOrder;
                 });
@@ -108,13 +164,8 @@ public class OrderService {
                         order.setStatus("CANCELLED");
                         orderRepository.save(order);
 
-                        // Return items to inventory
-                        for (OrderItem item : order.getItems()) {
-                            productClient.updateStock(item.getProductId(), -item.getQuantity());
-                        }
-
-                        // Send order cancelled event
-                        kafkaTemplate.send("order-cancelled", order);
+                        // Send order cancelled event; inventory-service releases the reserved stock
+                        outboxService.publish("order-cancelled", String.valueOf(id), OrderEvent.of(order));
 
                         return true;
                     }
@@ -122,4 +173,74 @@ public class OrderService {
                 })
                 .orElse(false);
     }
-}
\ No newline at end of file
+
+    // inventory-service could not hold the stock of a line, so the order is rejected before it can be paid.
+    // The order-cancelled event gives back the lines that were held; further failures of the same order are ignored
+    @KafkaListener(id = "order-reservation-failed", topics = "inventory-reservation-failed", groupId = "order-group")
+    @Transactional
+    public void handleReservationFailed(Map<String, Object> event) {
+        Long id = ((Number) event.get("orderId")).longValue();
+        orderRepository.findById(id).ifPresent(order -> {
+            if ("PENDING".equals(order.getStatus()) || "PROCESSING".equals(order.getStatus())) {
+                order.setStatus("REJECTED");
+                orderRepository.save(order);
+                outboxService.publish("order-cancelled", String.valueOf(id), OrderEvent.of(order));
+            } else if (!isClosed(order)) {
+                logger.warn("Order {} is {} but product {} could not be reserved", id, order.getStatus(),
+                        event.get("productId"));
+            }
+        });
+    }
+
+    private static boolean isClosed(Order order) {
+        return "REJECTED".equals(order.getStatus()) || "CANCELLED".equals(order.getStatus());
+    }
+
+    private Object validateCustomer(Long customerId) {
+        var customerResponse = customerClient.getCustomerById(customerId);
+        if (!customerResponse.getStatusCode().is2xxSuccessful()) {
+            throw new RuntimeException("Customer not found");
+        }
+        return customerResponse.getBody();
+    }
+
+    private Map<Long, ProductDto> loadProducts(List<Long> productIds) {
+        var productResponse = productClient.getProductsByIds(productIds);
+        if (!productResponse.getStatusCode().is2xxSuccessful() || productResponse.getBody() == null) {
+            throw new RuntimeException("Unable to load products");
+        }
+        return productResponse.getBody().stream()
+                .collect(Collectors.toMap(ProductDto::getId, Function.identity()));
+    }
+
+    // Waits for every check in completion order; the first failure or the deadline cancels the rest
+    private Map<Future<Object>, Object> awaitValidations(CompletionService<Object> validations, List<Future<Object>> pending) {
+        long deadline = System.nanoTime() + validationTimeout.toNanos();
+        Map<Future<Object>, Object> results = new HashMap<>();
+        try {
+            for (int i = 0; i < pending.size(); i++) {
+                Future<Object> done = validations.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    throw new RuntimeException("Order validation timed out after " + validationTimeout.toMillis() + " ms");
+                }
+                results.put(done, done.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Order validation interrupted", e);
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private Map<Long, Integer> aggregateQuantities(List<OrderItem> items) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItem item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+}
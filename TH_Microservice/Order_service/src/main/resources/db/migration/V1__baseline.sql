@@ -0,0 +1,37 @@
+-- Baseline schema. Every statement is idempotent, so it also applies to a schema
+-- that ddl-auto created before Flyway took over (baseline-version 0).
+
+CREATE SEQUENCE IF NOT EXISTS orders_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS order_item_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS orders (
+    id           bigint PRIMARY KEY,
+    customer_id  bigint,
+    order_date   timestamp(6),
+    status       varchar(255),
+    total_amount float(53)
+);
+CREATE INDEX IF NOT EXISTS idx_orders_customer_id ON orders (customer_id);
+
+CREATE TABLE IF NOT EXISTS order_item (
+    id         bigint PRIMARY KEY,
+    order_id   bigint NOT NULL REFERENCES orders (id),
+    product_id bigint,
+    quantity   integer,
+    price      float(53)
+);
+CREATE INDEX IF NOT EXISTS idx_order_item_order_id ON order_item (order_id);
+
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id          bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    topic       varchar(255),
+    message_key varchar(255),
+    payload     text,
+    created_at  timestamp(6),
+    sent_at     timestamp(6)
+);
+CREATE INDEX IF NOT EXISTS idx_outbox_event_sent_at ON outbox_event (sent_at, id);
+
+-- Rows written with the former identity ids may be ahead of the sequences
+SELECT setval('orders_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM orders) + 50, (SELECT last_value FROM orders_seq)));
+SELECT setval('order_item_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM order_item) + 50, (SELECT last_value FROM order_item_seq)));
@@ -0,0 +1,43 @@
+package iuh.fit.se.order_service.config;
+
+import feign.Client;
+import feign.hc5.ApacheHttp5Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class HttpClientConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(FeignAutoConfiguration.class))
+            .withUserConfiguration(HttpClientConfig.class)
+            .withPropertyValues("app.feign.clients.customer-service.url=http://localhost:8081",
+                    "app.feign.clients.customer-service.max-connections=5");
+
+    @Test
+    void feignClientsCallThroughThePooledHttpClient() {
+        contextRunner.run(context -> {
+            assertEquals(1, context.getBeansOfType(Client.class).size());
+            assertInstanceOf(ApacheHttp5Client.class, context.getBean(Client.class));
+        });
+    }
+
+    @Test
+    void poolIsMeasuredPerClient() {
+        contextRunner.run(context -> {
+            MeterRegistry registry = new SimpleMeterRegistry();
+            context.getBean(MeterBinder.class).bindTo(registry);
+
+            assertEquals(5.0, registry.get("feign.client.pool.max").tag("client", "customer-service").gauge().value());
+            assertNotNull(registry.find("feign.client.pool.leased").tag("client", "customer-service").gauge());
+        });
+    }
+}
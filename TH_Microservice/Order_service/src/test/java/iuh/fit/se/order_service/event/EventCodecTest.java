@@ -0,0 +1,42 @@
+package iuh.fit.se.order_service.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EventCodecTest {
+
+    private static final OrderEvent ORDER = new OrderEvent(42L, 7L, LocalDateTime.of(2024, 5, 1, 10, 30, 15, 123_000_000),
+            "PENDING", 59.94, List.of(new OrderEvent.Item(100L, 2, 9.99), new OrderEvent.Item(300_000L, 4, 9.99)));
+
+    @Test
+    void orderEventRoundTrips() {
+        assertEquals(ORDER, EventCodec.decode(EventCodec.encode(ORDER)));
+    }
+
+    @Test
+    void nullFieldsRoundTrip() {
+        OrderEvent order = new OrderEvent(1L, 2L, null, null, 0.0, List.of());
+        assertEquals(order, EventCodec.decode(EventCodec.encode(order)));
+    }
+
+    // A newer producer appends fields; this reader must still decode the fields it knows
+    @Test
+    void trailingFieldsOfNewerVersionsAreIgnored() {
+        byte[] encoded = EventCodec.encode(ORDER);
+        byte[] newer = Arrays.copyOf(encoded, encoded.length + 3);
+        newer[1] = 2;
+        assertEquals(ORDER, EventCodec.decode(newer));
+    }
+
+    @Test
+    void truncatedEventIsRejected() {
+        byte[] encoded = EventCodec.encode(ORDER);
+        assertThrows(IllegalArgumentException.class, () -> EventCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+    }
+}
@@ -0,0 +1,122 @@
+package iuh.fit.se.order_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.order_service.client.CustomerClient;
+import iuh.fit.se.order_service.client.ProductClient;
+import iuh.fit.se.order_service.config.AsyncConfig;
+import iuh.fit.se.order_service.model.Order;
+import iuh.fit.se.order_service.model.OrderItem;
+import iuh.fit.se.order_service.repository.OrderRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Fails when a read endpoint starts loading order items one order at a time again
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(OrderService.class)
+class OrderQueryCountTest {
+
+    private static final int ORDERS = 20;
+    private static final int ITEMS_PER_ORDER = 3;
+    private static final long CUSTOMER_ID = 7L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private ProductClient productClient;
+
+    @MockitoBean
+    private CustomerClient customerClient;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @MockitoBean(name = AsyncConfig.CLIENT_CALL_EXECUTOR)
+    private Executor clientCallExecutor;
+
+    private Statistics statistics;
+    private Long firstOrderId;
+
+    @BeforeEach
+    void setUp() {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            List<OrderItem> items = new ArrayList<>();
+            for (int j = 0; j < ITEMS_PER_ORDER; j++) {
+                items.add(new OrderItem(null, (long) j + 1, 1, 10.0));
+            }
+            orders.add(new Order(null, CUSTOMER_ID, LocalDateTime.now(), "PENDING", items, 10.0 * ITEMS_PER_ORDER));
+        }
+        firstOrderId = orderRepository.saveAll(orders).get(0).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void pageOfOrdersUsesTwoStatements() throws Exception {
+        assertEquals(2, statementsToRender(() -> orderService.getOrders(null, ORDERS)));
+    }
+
+    @Test
+    void ordersOfCustomerUseOneStatement() throws Exception {
+        assertEquals(1, statementsToRender(() -> orderService.getOrdersByCustomerId(CUSTOMER_ID)));
+    }
+
+    @Test
+    void singleOrderUsesOneStatement() throws Exception {
+        assertEquals(1, statementsToRender(() -> orderService.getOrderById(firstOrderId).orElseThrow()));
+    }
+
+    @Test
+    void streamedOrdersUseOneStatement() throws Exception {
+        assertEquals(1, statementsToRender(() -> {
+            StringWriter export = new StringWriter();
+            orderService.writeAllOrders(objectMapper.writer().withRootValueSeparator("\n").writeValues(export));
+            List<String> lines = export.toString().lines().toList();
+            assertEquals(ORDERS, lines.size());
+            return lines;
+        }));
+    }
+
+    // Serializes the result the way the controller does, so lazy items are loaded inside the count
+    private long statementsToRender(Callable<Object> request) throws Exception {
+        String json = objectMapper.writeValueAsString(request.call());
+        assertTrue(json.contains("productId"));
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,91 @@
+package iuh.fit.se.order_service.service;
+
+import iuh.fit.se.order_service.client.CustomerClient;
+import iuh.fit.se.order_service.client.ProductClient;
+import iuh.fit.se.order_service.config.AsyncConfig;
+import iuh.fit.se.order_service.model.Order;
+import iuh.fit.se.order_service.model.OrderItem;
+import iuh.fit.se.order_service.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({OrderService.class, AsyncConfig.class})
+class OrderServiceTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @MockitoBean
+    private ProductClient productClient;
+
+    @MockitoBean
+    private CustomerClient customerClient;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @Test
+    void orderWhoseStockCouldNotBeHeldIsRejectedAndCannotBePaid() {
+        Order order = orderRepository.save(order("PENDING"));
+
+        orderService.handleReservationFailed(reservationFailed(order.getId(), 10L));
+        orderService.handleReservationFailed(reservationFailed(order.getId(), 11L));
+
+        assertEquals("REJECTED", orderRepository.findById(order.getId()).orElseThrow().getStatus());
+        verify(outboxService, times(1)).publish(eq("order-cancelled"), eq(String.valueOf(order.getId())), any());
+
+        assertThrows(RuntimeException.class, () -> orderService.updateOrderStatus(order.getId(), "PAID"));
+        assertEquals("REJECTED", orderRepository.findById(order.getId()).orElseThrow().getStatus());
+        verify(outboxService, never()).publish(eq("order-updated"), anyString(), any());
+    }
+
+    @Test
+    void orderThatWasAlreadyPaidIsLeftAsItIs() {
+        Order order = orderRepository.save(order("PAID"));
+
+        orderService.handleReservationFailed(reservationFailed(order.getId(), 10L));
+
+        assertEquals("PAID", orderRepository.findById(order.getId()).orElseThrow().getStatus());
+        verify(outboxService, never()).publish(anyString(), anyString(), any());
+    }
+
+    private static Map<String, Object> reservationFailed(Long orderId, Long productId) {
+        // Numbers arrive as whatever JSON type fits them
+        return Map.of("orderId", orderId.intValue(), "productId", productId, "quantity", 2, "available", 1);
+    }
+
+    private static Order order(String status) {
+        Order order = new Order();
+        order.setCustomerId(7L);
+        order.setOrderDate(LocalDateTime.now());
+        order.setStatus(status);
+        order.setTotalAmount(40.0);
+        OrderItem item = new OrderItem();
+        item.setProductId(10L);
+        item.setQuantity(2);
+        item.setPrice(20.0);
+        order.setItems(new ArrayList<>(List.of(item)));
+        return order;
+    }
+}
@@ -0,0 +1,119 @@
+package iuh.fit.se.order_service.service;
+
+import iuh.fit.se.order_service.model.OutboxEvent;
+import iuh.fit.se.order_service.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The relay commits its claim and its result in transactions of its own, so the test must not run in one
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxRelayTest {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+
+    @AfterEach
+    void tearDown() {
+        outboxEventRepository.deleteAll();
+    }
+
+    @Test
+    void acknowledgedRowsAreMarkedSentAndFailedRowsReleased() {
+        OutboxEvent sent = save("orders", null);
+        OutboxEvent failed = save("broken", null);
+        when(kafkaTemplate.send(eq("orders"), any(), any())).thenReturn(acknowledged());
+        when(kafkaTemplate.send(eq("broken"), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        relay(Duration.ofSeconds(1)).relay();
+
+        assertNotNull(reload(sent).getSentAt());
+        assertNull(reload(failed).getSentAt());
+        assertNull(reload(failed).getClaimedAt());
+    }
+
+    @Test
+    void unacknowledgedRowsAreReleasedAfterTheSendTimeout() {
+        OutboxEvent pending = save("orders", null);
+        when(kafkaTemplate.send(eq("orders"), any(), any())).thenReturn(new CompletableFuture<>());
+
+        relay(Duration.ofMillis(50)).relay();
+
+        assertNull(reload(pending).getSentAt());
+        assertNull(reload(pending).getClaimedAt());
+    }
+
+    @Test
+    void liveClaimsAreSkippedAndExpiredOnesTakenOver() {
+        save("live", LocalDateTime.now());
+        OutboxEvent expired = save("orders", LocalDateTime.now().minusMinutes(5));
+        when(kafkaTemplate.send(eq("orders"), any(), any())).thenReturn(acknowledged());
+
+        relay(Duration.ofSeconds(1)).relay();
+
+        verify(kafkaTemplate, never()).send(eq("live"), any(), any());
+        assertNotNull(reload(expired).getSentAt());
+    }
+
+    @Test
+    void emptyOutboxSendsNothing() {
+        relay(Duration.ofSeconds(1)).relay();
+
+        verify(kafkaTemplate, never()).flush();
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    private OutboxRelay relay(Duration sendTimeout) {
+        return new OutboxRelay(outboxEventRepository, kafkaTemplate, new TransactionTemplate(transactionManager),
+                500, sendTimeout, Duration.ofMinutes(1), Duration.ofDays(1));
+    }
+
+    private OutboxEvent save(String topic, LocalDateTime claimedAt) {
+        OutboxEvent event = new OutboxEvent();
+        event.setTopic(topic);
+        event.setMessageKey("1");
+        event.setPayload("{}".getBytes(StandardCharsets.UTF_8));
+        event.setCreatedAt(LocalDateTime.now());
+        event.setClaimedAt(claimedAt);
+        return outboxEventRepository.save(event);
+    }
+
+    private OutboxEvent reload(OutboxEvent event) {
+        return outboxEventRepository.findById(event.getId()).orElseThrow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<SendResult<String, Object>> acknowledged() {
+        return CompletableFuture.completedFuture(mock(SendResult.class));
+    }
+}
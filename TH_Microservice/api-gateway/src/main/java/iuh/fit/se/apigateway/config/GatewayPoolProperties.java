@@ -0,0 +1,26 @@
+package iuh.fit.se.apigateway.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Connection pool settings per service id ({@code app.gateway.pools.<service-id>.*}).
+ * They apply to every instance of that service; services without an entry use the
+ * global {@code spring.cloud.gateway.httpclient.pool} settings.
+ */
+@ConfigurationProperties("app.gateway")
+public record GatewayPoolProperties(Map<String, Pool> pools) {
+
+    public GatewayPoolProperties {
+        pools = pools == null ? Map.of() : pools;
+    }
+
+    public record Pool(Integer maxConnections,
+                       Integer pendingAcquireMaxCount,
+                       Duration pendingAcquireTimeout,
+                       Duration maxIdleTime,
+                       Duration evictInBackground) {
+    }
+}
@@ -0,0 +1,72 @@
+package iuh.fit.se.apigateway.config;
+
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(GatewayPoolProperties.class)
+public class HttpClientConfig {
+
+    // Reactor Netty keeps one pool per remote address, so a route's pool settings are applied
+    // to the address of every instance listed for its service
+    @Bean
+    public HttpClientFactory gatewayHttpClientFactory(HttpClientProperties properties,
+                                                      ServerProperties serverProperties,
+                                                      List<HttpClientCustomizer> customizers,
+                                                      HttpClientSslConfigurer sslConfigurer,
+                                                      GatewayPoolProperties poolProperties,
+                                                      SimpleDiscoveryProperties discoveryProperties) {
+        return new HttpClientFactory(properties, serverProperties, sslConfigurer, customizers) {
+            @Override
+            protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties) {
+                ConnectionProvider defaults = super.buildConnectionProvider(properties);
+                ConnectionProvider.Builder builder = defaults.mutate();
+                if (builder == null) {
+                    // Pooling disabled globally
+                    return defaults;
+                }
+                for (Map.Entry<String, GatewayPoolProperties.Pool> entry : poolProperties.pools().entrySet()) {
+                    List<DefaultServiceInstance> instances =
+                            discoveryProperties.getInstances().getOrDefault(entry.getKey(), List.of());
+                    for (DefaultServiceInstance instance : instances) {
+                        builder.forRemoteHost(InetSocketAddress.createUnresolved(instance.getHost(), instance.getPort()),
+                                spec -> applyPool(spec, entry.getValue()));
+                    }
+                }
+                defaults.disposeLater().subscribe();
+                return builder.build();
+            }
+        };
+    }
+
+    private static void applyPool(ConnectionProvider.HostSpecificSpec spec, GatewayPoolProperties.Pool pool) {
+        if (pool.maxConnections() != null) {
+            spec.maxConnections(pool.maxConnections());
+        }
+        if (pool.pendingAcquireMaxCount() != null) {
+            spec.pendingAcquireMaxCount(pool.pendingAcquireMaxCount());
+        }
+        if (pool.pendingAcquireTimeout() != null) {
+            spec.pendingAcquireTimeout(pool.pendingAcquireTimeout());
+        }
+        if (pool.maxIdleTime() != null) {
+            spec.maxIdleTime(pool.maxIdleTime());
+        }
+        if (pool.evictInBackground() != null) {
+            spec.evictInBackground(pool.evictInBackground());
+        }
+    }
+}
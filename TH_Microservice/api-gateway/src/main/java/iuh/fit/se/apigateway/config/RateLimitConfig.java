@@ -0,0 +1,59 @@
+package iuh.fit.se.apigateway.config;
+
+import iuh.fit.se.apigateway.ratelimit.InMemoryTokenBucketStore;
+import iuh.fit.se.apigateway.ratelimit.RateLimitProperties;
+import iuh.fit.se.apigateway.ratelimit.TokenBucketRateLimiter;
+import iuh.fit.se.apigateway.ratelimit.TokenBucketStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Set;
+
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfig {
+
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    // Other backends plug in as a TokenBucketStore bean selected by app.gateway.rate-limit.backend
+    @Bean
+    @ConditionalOnProperty(name = "app.gateway.rate-limit.backend", havingValue = "in-memory", matchIfMissing = true)
+    public TokenBucketStore inMemoryTokenBucketStore(@Value("${app.gateway.rate-limit.max-buckets:100000}") long maxBuckets,
+                                                     @Value("${app.gateway.rate-limit.idle-timeout:10m}") Duration idleTimeout) {
+        return new InMemoryTokenBucketStore(maxBuckets, idleTimeout);
+    }
+
+    @Bean
+    public TokenBucketRateLimiter tokenBucketRateLimiter(TokenBucketStore store, RateLimitProperties properties) {
+        return new TokenBucketRateLimiter(store, properties);
+    }
+
+    // Buckets belong to the authenticated principal, otherwise to the remote address. X-Client-Id is unauthenticated,
+    // so it is only honoured from the callers in app.gateway.rate-limit.trusted-callers, e.g. a BFF that names its users
+    @Bean
+    public KeyResolver clientKeyResolver(@Value("${app.gateway.rate-limit.trusted-callers:}") Set<String> trustedCallers) {
+        return exchange -> exchange.getPrincipal()
+                .map(Principal::getName)
+                .switchIfEmpty(Mono.defer(() -> {
+                    InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+                    if (remoteAddress == null) {
+                        return Mono.empty();
+                    }
+                    String caller = remoteAddress.getAddress() != null
+                            ? remoteAddress.getAddress().getHostAddress() : remoteAddress.getHostString();
+                    String clientId = exchange.getRequest().getHeaders().getFirst(CLIENT_ID_HEADER);
+                    if (clientId != null && !clientId.isBlank() && trustedCallers.contains(caller)) {
+                        return Mono.just(clientId);
+                    }
+                    return Mono.just(caller);
+                }));
+    }
+}
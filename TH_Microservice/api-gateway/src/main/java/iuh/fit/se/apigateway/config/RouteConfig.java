@@ -1,23 +1,50 @@
 package iuh.fit.se.apigateway.config;
 
 
+import iuh.fit.se.apigateway.filter.ResponseCacheFilter;
+import iuh.fit.se.apigateway.ratelimit.TokenBucketRateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.builder.GatewayFilterSpec;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.function.UnaryOperator;
+
 @Configuration
 public class RouteConfig {
 
+    // lb:// routes are balanced over the instances listed in spring.cloud.discovery.client.simple.instances
     @Bean
-    public RouteLocator customRouteLocator(RouteLocatorBuilder builder) {
+    public RouteLocator customRouteLocator(RouteLocatorBuilder builder,
+                                           ResponseCacheFilter responseCacheFilter,
+                                           TokenBucketRateLimiter rateLimiter,
+                                           KeyResolver clientKeyResolver) {
+        // Every route is rate limited per route and per client (429 when exceeded); cache hits are served before the limiter
+        UnaryOperator<GatewayFilterSpec> rateLimited = f -> f.requestRateLimiter(config -> config
+                .setRateLimiter(rateLimiter)
+                .setKeyResolver(clientKeyResolver));
+
         return builder.routes()
                 .route("product-service", r -> r.path("/products/**")
-                        .uri("http://product-service:8081"))
+                        .filters(f -> rateLimited.apply(f).filter(responseCacheFilter))
+                        .uri("lb://product-service"))
                 .route("order-service", r -> r.path("/orders/**")
-                        .uri("http://order-service:8082"))
+                        .filters(rateLimited::apply)
+                        .uri("lb://order-service"))
                 .route("customer-service", r -> r.path("/customers/**")
-                        .uri("http://customer-service:8083"))
+                        .filters(f -> rateLimited.apply(f).filter(responseCacheFilter))
+                        .uri("lb://customer-service"))
+                .route("inventory-service", r -> r.path("/inventory/**")
+                        .filters(rateLimited::apply)
+                        .uri("lb://inventory-service"))
+                .route("payment-service", r -> r.path("/payments/**")
+                        .filters(rateLimited::apply)
+                        .uri("lb://payment-service"))
+                .route("shipping-service", r -> r.path("/shipments/**")
+                        .filters(rateLimited::apply)
+                        .uri("lb://shipping-service"))
                 .build();
     }
 }
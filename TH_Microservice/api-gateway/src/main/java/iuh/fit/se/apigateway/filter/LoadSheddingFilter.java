@@ -0,0 +1,103 @@
+package iuh.fit.se.apigateway.filter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Tracks an exponentially weighted moving average of upstream latency per route and rejects
+ * a growing share of requests with 503 once it passes the threshold: 0% at the threshold,
+ * up to {@code max-shed-ratio} at twice the threshold. Some requests always go through,
+ * so the average keeps following the upstream and shedding stops once it recovers.
+ */
+@Component
+public class LoadSheddingFilter implements GlobalFilter, Ordered {
+
+    private final Map<String, LatencyEwma> latencies = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final long thresholdNanos;
+    private final double alpha;
+    private final double maxShedRatio;
+
+    public LoadSheddingFilter(@Value("${app.gateway.load-shedding.enabled:true}") boolean enabled,
+                              @Value("${app.gateway.load-shedding.latency-threshold:1s}") Duration latencyThreshold,
+                              @Value("${app.gateway.load-shedding.alpha:0.2}") double alpha,
+                              @Value("${app.gateway.load-shedding.max-shed-ratio:0.9}") double maxShedRatio) {
+        this.enabled = enabled;
+        this.thresholdNanos = latencyThreshold.toNanos();
+        this.alpha = alpha;
+        this.maxShedRatio = maxShedRatio;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        if (!enabled || route == null || isStreaming(exchange.getRequest().getHeaders())) {
+            return chain.filter(exchange);
+        }
+
+        LatencyEwma latency = latencies.computeIfAbsent(route.getId(), id -> new LatencyEwma(alpha));
+        if (ThreadLocalRandom.current().nextDouble() < shedRatio(latency.value())) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+            return response.setComplete();
+        }
+
+        long start = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> latency.record(System.nanoTime() - start));
+    }
+
+    // Runs right before the request is sent upstream, after routing, load balancing and rate limiting
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    double shedRatio(double latencyNanos) {
+        if (latencyNanos <= thresholdNanos) {
+            return 0;
+        }
+        // Rises linearly from 0 at the threshold to max-shed-ratio at twice the threshold
+        return maxShedRatio * Math.min(1, (latencyNanos - thresholdNanos) / thresholdNanos);
+    }
+
+    // NDJSON exports last as long as the table takes to stream and say nothing about upstream load
+    private static boolean isStreaming(HttpHeaders requestHeaders) {
+        return requestHeaders.getAccept().stream().anyMatch(MediaType.APPLICATION_NDJSON::isCompatibleWith);
+    }
+
+    private static class LatencyEwma {
+
+        private final double alpha;
+        private double value = -1;
+
+        LatencyEwma(double alpha) {
+            this.alpha = alpha;
+        }
+
+        synchronized void record(long latencyNanos) {
+            value = value < 0 ? latencyNanos : alpha * latencyNanos + (1 - alpha) * value;
+        }
+
+        synchronized double value() {
+            return Math.max(value, 0);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package iuh.fit.se.apigateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Caches successful GET responses of a route and answers {@code If-None-Match} with 304.
+ * Identical GETs that arrive while the first one is still upstream wait for its response
+ * instead of going upstream themselves.
+ */
+@Component
+public class ResponseCacheFilter implements GatewayFilter, Ordered {
+
+    public static final String CACHE_STATUS_HEADER = "X-Cache";
+    private static final Set<HttpMethod> UNSAFE_METHODS =
+            Set.of(HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.DELETE);
+
+    private final Cache<String, CachedResponse> cache;
+    private final Map<String, Sinks.One<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final List<String> varyHeaders;
+    private final long maxBodySize;
+
+    public ResponseCacheFilter(@Value("${app.gateway.cache.ttl:30s}") Duration ttl,
+                               @Value("${app.gateway.cache.max-entries:10000}") long maxEntries,
+                               @Value("${app.gateway.cache.max-body-size:1MB}") DataSize maxBodySize,
+                               @Value("${app.gateway.cache.vary-headers:Accept,Accept-Encoding}") List<String> varyHeaders) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxEntries)
+                .build();
+        this.varyHeaders = varyHeaders;
+        this.maxBodySize = maxBodySize.toBytes();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (UNSAFE_METHODS.contains(request.getMethod())) {
+            // A successful write through the gateway drops the cached reads of the same collection
+            return chain.filter(exchange).then(Mono.fromRunnable(() -> invalidateAfterWrite(exchange)));
+        }
+        if (!HttpMethod.GET.equals(request.getMethod()) || bypassesCache(request)) {
+            return chain.filter(exchange);
+        }
+
+        String key = cacheKey(request);
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return writeCached(exchange, cached, "HIT");
+        }
+
+        Sinks.One<CachedResponse> sink = Sinks.one();
+        Sinks.One<CachedResponse> leader = inFlight.putIfAbsent(key, sink);
+        if (leader != null) {
+            // Replay the leader's response; if it could not be captured, go upstream after all
+            return leader.asMono()
+                    .onErrorResume(e -> Mono.empty())
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(response -> response.isPresent()
+                            ? writeCached(exchange, response.get(), "COALESCED")
+                            : chain.filter(exchange));
+        }
+
+        return chain.filter(exchange.mutate().response(new CapturingResponse(exchange, key, sink)).build())
+                .doFinally(signal -> {
+                    inFlight.remove(key, sink);
+                    sink.tryEmitEmpty();
+                });
+    }
+
+    // Must wrap the response before NettyWriteResponseFilter writes the upstream body
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+
+    private boolean bypassesCache(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null && (cacheControl.contains("no-cache") || cacheControl.contains("no-store"))) {
+            return true;
+        }
+        // NDJSON exports stream the whole table and must not be buffered
+        return headers.getAccept().stream().anyMatch(MediaType.APPLICATION_NDJSON::isCompatibleWith);
+    }
+
+    private String cacheKey(ServerHttpRequest request) {
+        StringBuilder key = new StringBuilder(request.getURI().getRawPath());
+        if (request.getURI().getRawQuery() != null) {
+            key.append('?').append(request.getURI().getRawQuery());
+        }
+        for (String header : varyHeaders) {
+            key.append('|').append(request.getHeaders().getOrEmpty(header));
+        }
+        return key.toString();
+    }
+
+    private void invalidateAfterWrite(ServerWebExchange exchange) {
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        if (status == null || !status.is2xxSuccessful()) {
+            return;
+        }
+        String path = exchange.getRequest().getURI().getRawPath();
+        int end = path.indexOf('/', 1);
+        String collection = end < 0 ? path : path.substring(0, end);
+        cache.asMap().keySet().removeIf(key -> key.startsWith(collection)
+                && (key.length() == collection.length() || "/?|".indexOf(key.charAt(collection.length())) >= 0));
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, CachedResponse cached, String cacheStatus) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(cached.status());
+        response.getHeaders().putAll(cached.headers());
+        return write(response, exchange.getRequest(), cached, cacheStatus);
+    }
+
+    private static Mono<Void> write(ServerHttpResponse response, ServerHttpRequest request,
+                                    CachedResponse cached, String cacheStatus) {
+        HttpHeaders headers = response.getHeaders();
+        headers.set(CACHE_STATUS_HEADER, cacheStatus);
+        if (cached.etag() != null) {
+            headers.setETag(cached.etag());
+            if (matches(request.getHeaders().getIfNoneMatch(), cached.etag())) {
+                response.setStatusCode(HttpStatus.NOT_MODIFIED);
+                headers.remove(HttpHeaders.CONTENT_LENGTH);
+                headers.remove(HttpHeaders.CONTENT_TYPE);
+                return response.setComplete();
+            }
+        }
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch) {
+            if ("*".equals(candidate)
+                    || opaqueTag.equals(candidate.startsWith("W/") ? candidate.substring(2) : candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCacheable(ServerHttpResponse response) {
+        if (!HttpStatus.OK.equals(response.getStatusCode())) {
+            return false;
+        }
+        HttpHeaders headers = response.getHeaders();
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null && (cacheControl.contains("no-store") || cacheControl.contains("private"))) {
+            return false;
+        }
+        MediaType contentType = headers.getContentType();
+        return contentType == null
+                || !(MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                || MediaType.TEXT_EVENT_STREAM.isCompatibleWith(contentType));
+    }
+
+    // Buffers the upstream body of the leading request, stores it and hands it to the waiting requests
+    private class CapturingResponse extends ServerHttpResponseDecorator {
+
+        private final ServerWebExchange exchange;
+        private final String key;
+        private final Sinks.One<CachedResponse> sink;
+
+        CapturingResponse(ServerWebExchange exchange, String key, Sinks.One<CachedResponse> sink) {
+            super(exchange.getResponse());
+            this.exchange = exchange;
+            this.key = key;
+            this.sink = sink;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!isCacheable(getDelegate()) || getHeaders().getContentLength() > maxBodySize) {
+                return super.writeWith(body);
+            }
+            // Without a Content-Length the size is only known while reading, so at most max-body-size is held
+            // back; a body that grows past it is written through as it arrives, starting with what was held
+            long[] size = {0};
+            Flux<List<DataBuffer>> chunks = Flux.<DataBuffer>from(body)
+                    .bufferUntil(buffer -> (size[0] += buffer.readableByteCount()) > maxBodySize);
+            return chunks.switchOnFirst((first, all) -> size[0] > maxBodySize
+                            ? super.writeWith(all.concatMapIterable(Function.identity()))
+                            : DataBufferUtils.join(all.concatMapIterable(Function.identity())).flatMap(this::store))
+                    .then();
+        }
+
+        private Mono<Void> store(DataBuffer joined) {
+            byte[] bytes = new byte[joined.readableByteCount()];
+            joined.read(bytes);
+            DataBufferUtils.release(joined);
+
+            CachedResponse captured = CachedResponse.capture(getDelegate(), bytes);
+            cache.put(key, captured);
+            sink.tryEmitValue(captured);
+            return write(getDelegate(), exchange.getRequest(), captured, "MISS");
+        }
+    }
+
+    record CachedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body, String etag) {
+
+        static CachedResponse capture(ServerHttpResponse response, byte[] body) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(response.getHeaders());
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.remove(CACHE_STATUS_HEADER);
+            // Strong validator over the body, unless the upstream service already sent one
+            String etag = headers.getETag() != null ? headers.getETag() : "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+            return new CachedResponse(response.getStatusCode(), HttpHeaders.readOnlyHttpHeaders(headers), body, etag);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package iuh.fit.se.apigateway.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Buckets live in this gateway instance only; idle buckets are dropped after a while
+ * (an absent bucket starts full, so that is the same as letting it refill).
+ */
+public class InMemoryTokenBucketStore implements TokenBucketStore {
+
+    private final Cache<String, Bucket> buckets;
+
+    public InMemoryTokenBucketStore(long maxBuckets, Duration idleTimeout) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    // Buckets are locked in key order, so two requests that share buckets cannot deadlock
+    @Override
+    public Mono<List<Long>> tryAcquire(List<BucketRequest> requests) {
+        List<Bucket> acquired = requests.stream()
+                .map(request -> buckets.get(request.bucketKey(), key -> new Bucket(request.limit().burstCapacity())))
+                .toList();
+        List<Integer> lockOrder = IntStream.range(0, requests.size()).boxed()
+                .sorted(Comparator.comparing(i -> requests.get(i).bucketKey()))
+                .toList();
+        lockOrder.forEach(i -> acquired.get(i).lock.lock());
+        try {
+            long now = System.nanoTime();
+            boolean allAvailable = true;
+            for (int i = 0; i < requests.size(); i++) {
+                allAvailable &= acquired.get(i).refill(requests.get(i).limit(), now) >= 1;
+            }
+            List<Long> remaining = new ArrayList<>(requests.size());
+            for (Bucket bucket : acquired) {
+                remaining.add(allAvailable ? bucket.take() : bucket.tokens < 1 ? -1 : (long) bucket.tokens);
+            }
+            return Mono.just(remaining);
+        } finally {
+            lockOrder.forEach(i -> acquired.get(i).lock.unlock());
+        }
+    }
+
+    private static class Bucket {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        Bucket(int capacity) {
+            this.tokens = capacity;
+        }
+
+        double refill(RateLimitProperties.Limit limit, long now) {
+            tokens = Math.min(limit.burstCapacity(), tokens + (now - lastRefillNanos) * limit.replenishRate() / 1e9);
+            lastRefillNanos = now;
+            return tokens;
+        }
+
+        long take() {
+            tokens -= 1;
+            return (long) tokens;
+        }
+    }
+}
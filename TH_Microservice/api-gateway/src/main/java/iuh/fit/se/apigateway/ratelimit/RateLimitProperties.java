@@ -0,0 +1,35 @@
+package iuh.fit.se.apigateway.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Map;
+
+/**
+ * Token-bucket limits ({@code app.gateway.rate-limit.*}). Each request takes one token from the
+ * bucket of its client on that route and one from the route's shared bucket.
+ */
+@ConfigurationProperties("app.gateway.rate-limit")
+public record RateLimitProperties(Limit routeDefault,
+                                  Limit clientDefault,
+                                  Map<String, Limit> routes,
+                                  Map<String, Limit> clients) {
+
+    public RateLimitProperties {
+        routeDefault = routeDefault == null ? new Limit(1000, 2000) : routeDefault;
+        clientDefault = clientDefault == null ? new Limit(50, 100) : clientDefault;
+        routes = routes == null ? Map.of() : routes;
+        clients = clients == null ? Map.of() : clients;
+    }
+
+    public Limit routeLimit(String routeId) {
+        return routes.getOrDefault(routeId, routeDefault);
+    }
+
+    public Limit clientLimit(String clientKey) {
+        return clients.getOrDefault(clientKey, clientDefault);
+    }
+
+    // replenishRate tokens per second, up to burstCapacity tokens
+    public record Limit(int replenishRate, int burstCapacity) {
+    }
+}
@@ -0,0 +1,69 @@
+package iuh.fit.se.apigateway.ratelimit;
+
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gateway {@link RateLimiter} over a {@link TokenBucketStore}. The client and route buckets are checked
+ * together and a token is taken from both only when both have one, so a request refused by either limit
+ * uses up neither the client's own budget nor the route's shared one.
+ */
+public class TokenBucketRateLimiter implements RateLimiter<Object> {
+
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+    public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+
+    private final TokenBucketStore store;
+    private final RateLimitProperties properties;
+
+    public TokenBucketRateLimiter(TokenBucketStore store, RateLimitProperties properties) {
+        this.store = store;
+        this.properties = properties;
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String clientKey) {
+        RateLimitProperties.Limit clientLimit = properties.clientLimit(clientKey);
+        RateLimitProperties.Limit routeLimit = properties.routeLimit(routeId);
+
+        return store.tryAcquire(List.of(
+                        new TokenBucketStore.BucketRequest("client:" + routeId + ":" + clientKey, clientLimit),
+                        new TokenBucketStore.BucketRequest("route:" + routeId, routeLimit)))
+                .map(remaining -> {
+                    if (remaining.get(0) < 0) {
+                        return response(false, 0, clientLimit);
+                    }
+                    if (remaining.get(1) < 0) {
+                        return response(false, 0, routeLimit);
+                    }
+                    return response(true, remaining.get(0), clientLimit);
+                });
+    }
+
+    private static Response response(boolean allowed, long remaining, RateLimitProperties.Limit limit) {
+        return new Response(allowed, Map.of(
+                REMAINING_HEADER, String.valueOf(remaining),
+                REPLENISH_RATE_HEADER, String.valueOf(limit.replenishRate()),
+                BURST_CAPACITY_HEADER, String.valueOf(limit.burstCapacity())));
+    }
+
+    // Limits come from RateLimitProperties rather than per-route filter args
+    @Override
+    public Map<String, Object> getConfig() {
+        return Map.of();
+    }
+
+    @Override
+    public Class<Object> getConfigClass() {
+        return Object.class;
+    }
+
+    @Override
+    public Object newConfig() {
+        return new Object();
+    }
+}
@@ -0,0 +1,19 @@
+package iuh.fit.se.apigateway.ratelimit;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Storage for the token buckets, so a shared backend can replace the in-memory one
+ * when the gateway runs as several instances.
+ */
+public interface TokenBucketStore {
+
+    // Refills the buckets, then takes one token from each of them only if every one has a token left.
+    // Emits the tokens left per bucket in request order; when nothing was taken, the empty buckets show -1
+    Mono<List<Long>> tryAcquire(List<BucketRequest> requests);
+
+    record BucketRequest(String bucketKey, RateLimitProperties.Limit limit) {
+    }
+}
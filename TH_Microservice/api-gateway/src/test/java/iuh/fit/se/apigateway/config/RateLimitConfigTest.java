@@ -0,0 +1,37 @@
+package iuh.fit.se.apigateway.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RateLimitConfigTest {
+
+    private final KeyResolver resolver = new RateLimitConfig().clientKeyResolver(Set.of("10.0.0.5"));
+
+    @Test
+    void untrustedCallerIsLimitedByItsAddressWhateverClientIdItSends() {
+        assertEquals("203.0.113.7", resolve("203.0.113.7", "someone-else"));
+        assertEquals("203.0.113.7", resolve("203.0.113.7", null));
+    }
+
+    @Test
+    void trustedCallerPicksTheClientBucket() {
+        assertEquals("mobile-app", resolve("10.0.0.5", "mobile-app"));
+        assertEquals("10.0.0.5", resolve("10.0.0.5", null));
+    }
+
+    private String resolve(String remoteAddress, String clientId) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/products")
+                .remoteAddress(new InetSocketAddress(remoteAddress, 40000));
+        if (clientId != null) {
+            request.header(RateLimitConfig.CLIENT_ID_HEADER, clientId);
+        }
+        return resolver.resolve(MockServerWebExchange.from(request)).block();
+    }
+}
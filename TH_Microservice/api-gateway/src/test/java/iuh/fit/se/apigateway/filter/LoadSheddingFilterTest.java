@@ -0,0 +1,31 @@
+package iuh.fit.se.apigateway.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LoadSheddingFilterTest {
+
+    private static final long THRESHOLD_NANOS = Duration.ofMillis(100).toNanos();
+
+    private final LoadSheddingFilter filter = new LoadSheddingFilter(true, Duration.ofMillis(100), 0.2, 0.9);
+
+    @Test
+    void nothingIsShedUpToTheThreshold() {
+        assertEquals(0.0, filter.shedRatio(THRESHOLD_NANOS / 2));
+        assertEquals(0.0, filter.shedRatio(THRESHOLD_NANOS));
+    }
+
+    @Test
+    void shedRatioRisesLinearlyToTheMaximumAtTwiceTheThreshold() {
+        assertEquals(0.45, filter.shedRatio(THRESHOLD_NANOS * 1.5), 1e-9);
+        assertEquals(0.9, filter.shedRatio(THRESHOLD_NANOS * 2), 1e-9);
+    }
+
+    @Test
+    void shedRatioNeverPassesTheMaximum() {
+        assertEquals(0.9, filter.shedRatio(THRESHOLD_NANOS * 10), 1e-9);
+    }
+}
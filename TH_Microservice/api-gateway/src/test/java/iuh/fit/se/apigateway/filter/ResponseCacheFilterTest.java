@@ -0,0 +1,131 @@
+package iuh.fit.se.apigateway.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResponseCacheFilterTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final ResponseCacheFilter filter = new ResponseCacheFilter(Duration.ofMinutes(1), 100,
+            DataSize.ofBytes(16), List.of(HttpHeaders.ACCEPT));
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    @Test
+    void firstGetGoesUpstreamAndTheNextIsServedFromTheCache() {
+        GatewayFilterChain upstream = upstream(Mono.empty(), "{\"id\":1}");
+
+        MockServerWebExchange miss = get("/products/1");
+        filter.filter(miss, upstream).block(TIMEOUT);
+        MockServerWebExchange hit = get("/products/1");
+        filter.filter(hit, upstream).block(TIMEOUT);
+
+        assertEquals("MISS", miss.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("HIT", hit.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("{\"id\":1}", hit.getResponse().getBodyAsString().block(TIMEOUT));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void getThatArrivesWhileTheSameGetIsUpstreamWaitsForItsResponse() {
+        Sinks.Empty<Void> release = Sinks.empty();
+        GatewayFilterChain upstream = upstream(release.asMono(), "{\"id\":2}");
+
+        MockServerWebExchange leader = get("/products/2");
+        CompletableFuture<Void> leading = filter.filter(leader, upstream).toFuture();
+        MockServerWebExchange follower = get("/products/2");
+        CompletableFuture<Void> following = filter.filter(follower, upstream).toFuture();
+        release.tryEmitEmpty();
+        CompletableFuture.allOf(leading, following).orTimeout(5, TimeUnit.SECONDS).join();
+
+        assertEquals("MISS", leader.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("COALESCED", follower.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("{\"id\":2}", follower.getResponse().getBodyAsString().block(TIMEOUT));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void getWithTheCurrentEtagIsAnsweredWithNotModified() {
+        GatewayFilterChain upstream = upstream(Mono.empty(), "{\"id\":3}");
+        MockServerWebExchange miss = get("/products/3");
+        filter.filter(miss, upstream).block(TIMEOUT);
+        String etag = miss.getResponse().getHeaders().getETag();
+
+        MockServerWebExchange revalidation = MockServerWebExchange.from(MockServerHttpRequest.get("/products/3")
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, etag));
+        filter.filter(revalidation, upstream).block(TIMEOUT);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidation.getResponse().getStatusCode());
+        assertEquals(etag, revalidation.getResponse().getHeaders().getETag());
+        assertEquals("", revalidation.getResponse().getBodyAsString().defaultIfEmpty("").block(TIMEOUT));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void successfulWriteDropsTheCachedReadsOfItsCollectionOnly() {
+        GatewayFilterChain upstream = upstream(Mono.empty(), "{\"id\":4}");
+        filter.filter(get("/products/4"), upstream).block(TIMEOUT);
+        filter.filter(get("/customers/4"), upstream).block(TIMEOUT);
+
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.put("/products/4")), upstream).block(TIMEOUT);
+        MockServerWebExchange product = get("/products/4");
+        filter.filter(product, upstream).block(TIMEOUT);
+        MockServerWebExchange customer = get("/customers/4");
+        filter.filter(customer, upstream).block(TIMEOUT);
+
+        assertEquals("MISS", product.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals("HIT", customer.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+    }
+
+    @Test
+    void bodyOverTheLimitWithoutContentLengthIsStreamedThroughAndNotCached() {
+        GatewayFilterChain upstream = upstream(Mono.empty(), "[{\"id\":1},", "{\"id\":2},", "{\"id\":3}]");
+
+        MockServerWebExchange first = get("/products");
+        filter.filter(first, upstream).block(TIMEOUT);
+        MockServerWebExchange second = get("/products");
+        filter.filter(second, upstream).block(TIMEOUT);
+
+        assertEquals("[{\"id\":1},{\"id\":2},{\"id\":3}]", first.getResponse().getBodyAsString().block(TIMEOUT));
+        assertNull(first.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertNull(second.getResponse().getHeaders().getFirst(ResponseCacheFilter.CACHE_STATUS_HEADER));
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    private static MockServerWebExchange get(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path).accept(MediaType.APPLICATION_JSON));
+    }
+
+    // Answers 200 with the chunks once ready completes, without a Content-Length
+    private GatewayFilterChain upstream(Mono<Void> ready, String... chunks) {
+        return exchange -> ready.then(Mono.defer(() -> {
+            upstreamCalls.incrementAndGet();
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.OK);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            return response.writeWith(Flux.fromArray(chunks)
+                    .map(chunk -> response.bufferFactory().wrap(chunk.getBytes(StandardCharsets.UTF_8))));
+        }));
+    }
+}
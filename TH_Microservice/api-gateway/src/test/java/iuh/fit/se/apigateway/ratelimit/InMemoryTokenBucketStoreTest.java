@@ -0,0 +1,49 @@
+package iuh.fit.se.apigateway.ratelimit;
+
+import iuh.fit.se.apigateway.ratelimit.TokenBucketStore.BucketRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InMemoryTokenBucketStoreTest {
+
+    private final InMemoryTokenBucketStore store = new InMemoryTokenBucketStore(100, Duration.ofMinutes(1));
+
+    @Test
+    void burstCapacityIsAvailableAtOnceAndNoMore() {
+        List<BucketRequest> request = List.of(new BucketRequest("client:a", new RateLimitProperties.Limit(1, 3)));
+
+        assertEquals(List.of(2L), acquire(request));
+        assertEquals(List.of(1L), acquire(request));
+        assertEquals(List.of(0L), acquire(request));
+        assertEquals(List.of(-1L), acquire(request));
+    }
+
+    @Test
+    void emptyBucketRefillsAtTheReplenishRate() throws InterruptedException {
+        List<BucketRequest> request = List.of(new BucketRequest("client:b", new RateLimitProperties.Limit(1000, 1)));
+        assertEquals(List.of(0L), acquire(request));
+        assertEquals(List.of(-1L), acquire(request));
+
+        Thread.sleep(20);
+
+        assertEquals(List.of(0L), acquire(request));
+    }
+
+    @Test
+    void clientIsNotChargedWhenTheRouteRefuses() {
+        BucketRequest route = new BucketRequest("route:products", new RateLimitProperties.Limit(1, 1));
+        BucketRequest client = new BucketRequest("client:c", new RateLimitProperties.Limit(1, 5));
+
+        assertEquals(List.of(0L, 4L), acquire(List.of(route, client)));
+        assertEquals(List.of(-1L, 4L), acquire(List.of(route, client)));
+        assertEquals(List.of(3L), acquire(List.of(client)));
+    }
+
+    private List<Long> acquire(List<BucketRequest> requests) {
+        return store.tryAcquire(requests).block();
+    }
+}
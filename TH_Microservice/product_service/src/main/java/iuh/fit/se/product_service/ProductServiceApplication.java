@@ -2,8 +2,10 @@ package iuh.fit.se.product_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 
 @SpringBootApplication
+@EnableCaching
 public class ProductServiceApplication {
 
     public static void main(String[] args) {
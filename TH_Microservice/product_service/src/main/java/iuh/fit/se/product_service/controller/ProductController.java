@@ -1,11 +1,14 @@
 package iuh.fit.se.product_service.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import iuh.fit.se.product_service.model.Product;
 import iuh.fit.se.product_service.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -13,16 +16,37 @@ import java.util.List;
 @RequestMapping("/products")
 public class ProductController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService,
+                             ObjectMapper objectMapper) {
         this.productService = productService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
-        return ResponseEntity.ok(productService.getAllProducts());
+    public ResponseEntity<List<Product>> getAllProducts(@RequestParam(required = false) Long after,
+                                                        @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<Product> products = productService.getProducts(after, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (products.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(products.get(products.size() - 1).getId()));
+        }
+        return response.body(products);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> productService.writeAllProducts(
+                        objectMapper.writer().withRootValueSeparator("\n").writeValues(outputStream)));
     }
 
     @GetMapping("/{id}")
@@ -32,6 +56,11 @@ public class ProductController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<Product>> getProductsByIds(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(productService.getProductsByIds(ids));
+    }
+
     @PostMapping
     public ResponseEntity<Product> createProduct(@RequestBody Product product) {
         Product createdProduct = productService.createProduct(product);
@@ -2,9 +2,33 @@ package iuh.fit.se.product_service.repository;
 
 
 import iuh.fit.se.product_service.model.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    // Conditional update so concurrent orders can never drive stock below zero
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity - :quantity " +
+            "WHERE p.id = :id AND p.stockQuantity >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Product> streamAllByOrderByIdAsc();
 }
@@ -1,36 +1,78 @@
 package iuh.fit.se.product_service.service;
 
-
+import com.fasterxml.jackson.databind.SequenceWriter;
 import iuh.fit.se.product_service.model.Product;
 import iuh.fit.se.product_service.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
 
+    public static final String PRODUCT_CACHE = "products";
+
     private final ProductRepository productRepository;
+    private final CacheManager cacheManager;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final EntityManager entityManager;
 
     @Autowired
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository,
+                          CacheManager cacheManager,
+                          KafkaTemplate<String, Object> kafkaTemplate,
+                          EntityManager entityManager) {
         this.productRepository = productRepository;
+        this.cacheManager = cacheManager;
+        this.kafkaTemplate = kafkaTemplate;
+        this.entityManager = entityManager;
+    }
+
+    public List<Product> getProducts(Long afterId, int limit) {
+        return productRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId, Limit.of(limit));
     }
 
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    // NDJSON export straight from the table; it bypasses the products cache, which only holds single lookups
+    @Transactional(readOnly = true)
+    public void writeAllProducts(SequenceWriter lines) throws IOException {
+        try (lines; Stream<Product> products = productRepository.streamAllByOrderByIdAsc()) {
+            for (Iterator<Product> iterator = products.iterator(); iterator.hasNext(); ) {
+                Product product = iterator.next();
+                lines.write(product);
+                entityManager.detach(product);
+            }
+        }
     }
 
+    @Cacheable(value = PRODUCT_CACHE, key = "#id", unless = "#result == null")
     public Optional<Product> getProductById(Long id) {
         return productRepository.findById(id);
     }
 
+    public List<Product> getProductsByIds(List<Long> ids) {
+        return productRepository.findAllById(ids);
+    }
+
     public Product createProduct(Product product) {
         return productRepository.save(product);
     }
 
+    @Transactional
     public Optional<Product> updateProduct(Long id, Product productDetails) {
         return productRepository.findById(id)
                 .map(existingProduct -> {
@@ -38,30 +80,55 @@ public class ProductService {
                     existingProduct.setDescription(productDetails.getDescription());
                     existingProduct.setPrice(productDetails.getPrice());
                     existingProduct.setStockQuantity(productDetails.getStockQuantity());
-                    return productRepository.save(existingProduct);
+                    Product updatedProduct = productRepository.save(existingProduct);
+                    productChanged(id, "UPDATED");
+                    return updatedProduct;
                 });
     }
 
+    @Transactional
     public boolean deleteProduct(Long id) {
         return productRepository.findById(id)
                 .map(product -> {
                     productRepository.delete(product);
+                    productChanged(id, "DELETED");
                     return true;
                 })
                 .orElse(false);
     }
 
+    @Transactional
     public boolean updateStock(Long productId, int quantity) {
-        return productRepository.findById(productId)
-                .map(product -> {
-                    int newQuantity = product.getStockQuantity() - quantity;
-                    if (newQuantity >= 0) {
-                        product.setStockQuantity(newQuantity);
-                        productRepository.save(product);
-                        return true;
-                    }
-                    return false;
-                })
-                .orElse(false);
+        if (productRepository.decrementStock(productId, quantity) == 1) {
+            productChanged(productId, "STOCK_UPDATED");
+            return true;
+        }
+        return false;
+    }
+
+    // Evicts the cached entry and publishes product-changed once the change is committed,
+    // so neither this cache nor downstream near-caches can reload the old row
+    private void productChanged(Long productId, String changeType) {
+        Runnable notify = () -> {
+            Cache cache = cacheManager.getCache(PRODUCT_CACHE);
+            if (cache != null) {
+                cache.evict(productId);
+            }
+            kafkaTemplate.send("product-changed", String.valueOf(productId), Map.of(
+                    "productId", productId,
+                    "type", changeType
+            ));
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notify.run();
+                }
+            });
+        } else {
+            notify.run();
+        }
     }
 }
\ No newline at end of file
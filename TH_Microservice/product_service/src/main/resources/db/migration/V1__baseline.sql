@@ -0,0 +1,15 @@
+-- Baseline schema. Every statement is idempotent, so it also applies to a schema
+-- that ddl-auto created before Flyway took over (baseline-version 0).
+
+CREATE SEQUENCE IF NOT EXISTS product_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS product (
+    id             bigint PRIMARY KEY,
+    name           varchar(255),
+    description    varchar(255),
+    price          float(53),
+    stock_quantity integer
+);
+
+-- Rows written with the former identity ids may be ahead of the sequences
+SELECT setval('product_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM product) + 50, (SELECT last_value FROM product_seq)));
@@ -0,0 +1,91 @@
+package iuh.fit.se.product_service.service;
+
+import iuh.fit.se.product_service.model.Product;
+import iuh.fit.se.product_service.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(ProductService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+    private static final int INITIAL_STOCK = 500;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @MockitoBean
+    private CacheManager cacheManager;
+
+    @MockitoBean
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Test
+    void concurrentDecrementsOnHotProductNeverOversell() throws Exception {
+        Product product = productRepository.save(new Product(null, "Hot SKU", "contended", 10.0, INITIAL_STOCK));
+        Long productId = product.getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < ATTEMPTS_PER_THREAD; j++) {
+                    if (productService.updateStock(productId, 1)) {
+                        succeeded.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int attempts = THREADS * ATTEMPTS_PER_THREAD;
+        assertTrue(attempts > INITIAL_STOCK);
+        assertEquals(INITIAL_STOCK, succeeded.get());
+        assertEquals(0, productRepository.findById(productId).orElseThrow().getStockQuantity());
+    }
+
+    @Test
+    void decrementRejectedWhenStockInsufficient() {
+        Product product = productRepository.save(new Product(null, "Low stock", "single unit", 5.0, 1));
+
+        assertTrue(productService.updateStock(product.getId(), 1));
+        assertFalse(productService.updateStock(product.getId(), 1));
+        assertEquals(0, productRepository.findById(product.getId()).orElseThrow().getStockQuantity());
+    }
+}
@@ -0,0 +1,105 @@
+package iuh.fit.se.inventory_service.config;
+
+import feign.Client;
+import feign.hc5.ApacheHttp5Client;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+// Feign's default client opens an HttpURLConnection per call. Declaring the CloseableHttpClient switches off
+// spring-cloud-openfeign's own ApacheHttp5Client, so the Feign Client bean below wraps it instead and every
+// Feign client shares this keep-alive pool
+@Configuration
+@EnableConfigurationProperties(FeignHttpClientProperties.class)
+public class HttpClientConfig {
+
+    // Connections in use, idle ones kept alive, calls waiting for one, and the limit
+    private static final Map<String, ToDoubleFunction<PoolStats>> POOL_GAUGES = Map.of(
+            "leased", PoolStats::getLeased,
+            "available", PoolStats::getAvailable,
+            "pending", PoolStats::getPending,
+            "max", PoolStats::getMax);
+
+    @Bean
+    public PoolingHttpClientConnectionManager feignConnectionManager(FeignHttpClientProperties properties) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.maxConnections())
+                .setMaxConnPerRoute(properties.maxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setTimeToLive(TimeValue.ofMilliseconds(properties.timeToLive().toMillis()))
+                        // Check a connection that sat idle for a while before reusing it; the server may have closed it
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        clientRoutes(properties).forEach((name, route) -> {
+            Integer maxConnections = properties.clients().get(name).maxConnections();
+            if (maxConnections != null) {
+                connectionManager.setMaxPerRoute(route, maxConnections);
+            }
+        });
+        return connectionManager;
+    }
+
+    // The default content compression sends Accept-Encoding: gzip, deflate and inflates the response transparently
+    @Bean
+    public CloseableHttpClient feignHttpClient(PoolingHttpClientConnectionManager feignConnectionManager,
+                                               FeignHttpClientProperties properties) {
+        return HttpClients.custom()
+                .setConnectionManager(feignConnectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(properties.idleTimeout().toMillis()))
+                .build();
+    }
+
+    // Connect and read timeouts still come from each client's Request.Options, applied per request
+    @Bean
+    public Client feignClient(CloseableHttpClient feignHttpClient) {
+        return new ApacheHttp5Client(feignHttpClient);
+    }
+
+    // Pool totals as httpcomponents.httpclient.pool.*{httpclient=feign}, plus feign.client.pool.* per client
+    @Bean
+    public MeterBinder feignConnectionPoolMetrics(PoolingHttpClientConnectionManager feignConnectionManager,
+                                                  FeignHttpClientProperties properties) {
+        return registry -> {
+            new PoolingHttpClientConnectionManagerMetricsBinder(feignConnectionManager, "feign").bindTo(registry);
+            clientRoutes(properties).forEach((name, route) -> POOL_GAUGES.forEach((metric, value) ->
+                    Gauge.builder("feign.client.pool." + metric, feignConnectionManager,
+                                    manager -> value.applyAsDouble(manager.getStats(route)))
+                            .tag("client", name)
+                            .register(registry)));
+        };
+    }
+
+    // The route the pool keys the connections of a client on; the port is spelled out as the route planner does
+    private static Map<String, HttpRoute> clientRoutes(FeignHttpClientProperties properties) {
+        Map<String, HttpRoute> routes = new LinkedHashMap<>();
+        properties.clients().forEach((name, client) -> {
+            if (client.url() == null) {
+                return;
+            }
+            URI uri = URI.create(client.url());
+            boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+            int port = uri.getPort() != -1 ? uri.getPort() : secure ? 443 : 80;
+            routes.put(name, new HttpRoute(new HttpHost(uri.getScheme(), uri.getHost(), port), null, secure));
+        });
+        return routes;
+    }
+}
@@ -0,0 +1,58 @@
+package iuh.fit.se.inventory_service.config;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.Map;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    // Batch variant of the default listener factory: one poll is handed to the listener as a list
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            KafkaProperties kafkaProperties,
+            @Value("${app.inventory.consumer.batch-size:500}") int batchSize,
+            @Value("${app.inventory.consumer.concurrency:3}") int concurrency) {
+        Map<String, Object> consumerProperties = kafkaProperties.buildConsumerProperties(null);
+        consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchSize);
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, new DefaultKafkaConsumerFactory<>(consumerProperties));
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        return factory;
+    }
+
+    // Batch factory of the fallback replayer: values stay raw JSON, and a poll that cannot be replayed yet is
+    // redelivered from the failed record after the wait interval, for as long as that takes
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> fallbackKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            KafkaProperties kafkaProperties,
+            @Value("${app.fallback-replay.batch-size:100}") int batchSize,
+            @Value("${app.fallback-replay.wait-interval:5000}") long waitInterval) {
+        Map<String, Object> consumerProperties = kafkaProperties.buildConsumerProperties(null);
+        consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchSize);
+        consumerProperties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerProperties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, new DefaultKafkaConsumerFactory<>(consumerProperties));
+        factory.setBatchListener(true);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(
+                new FixedBackOff(waitInterval, FixedBackOff.UNLIMITED_ATTEMPTS)));
+        return factory;
+    }
+}
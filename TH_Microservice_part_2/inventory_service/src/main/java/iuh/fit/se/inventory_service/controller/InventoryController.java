@@ -1,30 +1,59 @@
 package iuh.fit.se.inventory_service.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import iuh.fit.se.inventory_service.model.InVentoryItem;
 import iuh.fit.se.inventory_service.model.InventoryTransaction;
+import iuh.fit.se.inventory_service.service.InventoryLaneExecutor;
 import iuh.fit.se.inventory_service.service.InventoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/inventory")
 public class InventoryController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final InventoryService inventoryService;
+    private final InventoryLaneExecutor laneExecutor;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public InventoryController(InventoryService inventoryService) {
+    public InventoryController(InventoryService inventoryService,
+                               InventoryLaneExecutor laneExecutor,
+                               ObjectMapper objectMapper) {
         this.inventoryService = inventoryService;
+        this.laneExecutor = laneExecutor;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public ResponseEntity<List<InVentoryItem>> getAllInventoryItems() {
-        return ResponseEntity.ok(inventoryService.getAllInventoryItems());
+    public ResponseEntity<List<InVentoryItem>> getAllInventoryItems(@RequestParam(required = false) Long after,
+                                                                    @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<InVentoryItem> items = inventoryService.getInventoryItems(after, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (items.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(items.get(items.size() - 1).getId()));
+        }
+        return response.body(items);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllInventoryItems() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> inventoryService.writeAllInventoryItems(
+                        objectMapper.writer().withRootValueSeparator("\n").writeValues(outputStream)));
     }
 
     @GetMapping("/{id}")
@@ -42,7 +71,7 @@ public class InventoryController {
     }
 
     @PostMapping("/update")
-    public ResponseEntity<InVentoryItem> updateInventory(@RequestBody Map<String, Object> request) {
+    public CompletableFuture<ResponseEntity<InVentoryItem>> updateInventory(@RequestBody Map<String, Object> request) {
         try {
             Long productId = Long.valueOf(request.get("productId").toString());
             Integer quantity = Integer.valueOf(request.get("quantity").toString());
@@ -50,13 +79,24 @@ public class InventoryController {
             String reason = request.get("reason").toString();
             Long referenceId = Long.valueOf(request.get("referenceId").toString());
 
-            InVentoryItem updatedItem = inventoryService.updateInventory(productId, quantity, type, reason, referenceId);
-            return ResponseEntity.ok(updatedItem);
+            return laneExecutor.submit(productId,
+                            () -> inventoryService.updateInventory(productId, quantity, type, reason, referenceId))
+                    .thenApply(ResponseEntity::ok)
+                    .exceptionally(ex -> ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
         } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
         }
     }
 
+    // Rebuilds the item's quantity from its ledger on the product's lane
+    @PostMapping("/product/{productId}/replay")
+    public CompletableFuture<ResponseEntity<InVentoryItem>> replayInventoryItem(@PathVariable Long productId) {
+        return laneExecutor.submit(productId, () -> inventoryService.replayInventoryItem(productId))
+                .thenApply(item -> item
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.notFound().build()));
+    }
+
     @GetMapping("/transactions/product/{productId}")
     public ResponseEntity<List<InventoryTransaction>> getTransactionsByProductId(@PathVariable Long productId) {
         return ResponseEntity.ok(inventoryService.getTransactionsByProductId(productId));
@@ -0,0 +1,20 @@
+package iuh.fit.se.inventory_service.event;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+// Kafka value deserializer for the events written with EventCodec; listeners receive the typed records
+public class EventDeserializer implements Deserializer<Object> {
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return EventCodec.decode(data);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Unable to decode event from topic: " + topic, e);
+        }
+    }
+}
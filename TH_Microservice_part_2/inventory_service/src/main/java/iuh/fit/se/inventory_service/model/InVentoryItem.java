@@ -4,6 +4,9 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,16 +14,23 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = @Index(name = "uk_inventory_item_product_id", columnList = "productId", unique = true))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class InVentoryItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_item_seq")
+    @SequenceGenerator(name = "inventory_item_seq", sequenceName = "inventory_item_seq", allocationSize = 50)
     private Long id;
 
     private Long productId;
+    // On hand; quantity - reservedQuantity is what new orders can still take
     private Integer quantity;
+    private Integer reservedQuantity;
     private String location;
     private LocalDateTime lastUpdated;
+
+    // Ledger position of the last entry folded into quantity
+    private Long ledgerSequence;
 }
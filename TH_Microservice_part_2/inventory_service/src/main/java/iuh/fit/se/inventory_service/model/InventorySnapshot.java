@@ -0,0 +1,32 @@
+package iuh.fit.se.inventory_service.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Balance of a product's ledger up to and including ledgerSequence
+@Entity
+@Table(indexes = @Index(name = "uk_inventory_snapshot_ledger", columnList = "productId, ledgerSequence", unique = true))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventorySnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_snapshot_seq")
+    @SequenceGenerator(name = "inventory_snapshot_seq", sequenceName = "inventory_snapshot_seq", allocationSize = 50)
+    private Long id;
+
+    private Long productId;
+    private Long ledgerSequence;
+    private Long quantity;
+    private LocalDateTime createdAt;
+}
@@ -9,12 +9,14 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = @Index(name = "uk_inventory_transaction_ledger", columnList = "productId, ledgerSequence", unique = true))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class InventoryTransaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_transaction_seq")
+    @SequenceGenerator(name = "inventory_transaction_seq", sequenceName = "inventory_transaction_seq", allocationSize = 50)
     private Long id;
 
     private Long productId;
@@ -23,4 +25,7 @@ public class InventoryTransaction {
     private String reason;
     private Long referenceId;
     private LocalDateTime transactionDate;
+
+    // Position of the entry in its product's ledger: 1, 2, 3...
+    private Long ledgerSequence;
 }
@@ -0,0 +1,36 @@
+package iuh.fit.se.inventory_service.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "outbox_event", indexes = @Index(name = "idx_outbox_event_sent_at", columnList = "sentAt, id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String topic;
+    private String messageKey;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    private LocalDateTime createdAt;
+    // Set while a relay is sending the row; a claim older than app.outbox.claim-timeout is taken over
+    private LocalDateTime claimedAt;
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,40 @@
+package iuh.fit.se.inventory_service.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Stock of one product held for one order: HELD until the order is paid (CONFIRMED), cancelled (RELEASED)
+// or the hold runs out (EXPIRED). A line that could not be held is kept as REJECTED; an order cancelled before
+// its lines were held gets them as RELEASED.
+@Entity
+@Table(indexes = {
+        @Index(name = "uk_stock_reservation_order_product", columnList = "orderId, productId", unique = true),
+        @Index(name = "idx_stock_reservation_expiry", columnList = "status, expiresAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_reservation_seq")
+    @SequenceGenerator(name = "stock_reservation_seq", sequenceName = "stock_reservation_seq", allocationSize = 50)
+    private Long id;
+
+    private Long orderId;
+    private Long productId;
+    private Integer quantity;
+    private String status;
+    private LocalDateTime expiresAt;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -1,12 +1,37 @@
 package iuh.fit.se.inventory_service.repository;
 
 import iuh.fit.se.inventory_service.model.InVentoryItem;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface InventoryItemRepository extends JpaRepository<InVentoryItem, Long> {
     Optional<InVentoryItem> findByProductId(Long productId);
+
+    // Ledger appends for a product hold its row lock, so entries are numbered without gaps or duplicates
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<InVentoryItem> findLockedByProductId(Long productId);
+
+    // Locks every row touched by a batch up front, in a stable order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<InVentoryItem> findByProductIdInOrderByProductIdAsc(Collection<Long> productIds);
+
+    List<InVentoryItem> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<InVentoryItem> streamAllByOrderByIdAsc();
 }
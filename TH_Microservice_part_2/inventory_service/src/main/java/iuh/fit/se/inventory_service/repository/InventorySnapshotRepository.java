@@ -0,0 +1,12 @@
+package iuh.fit.se.inventory_service.repository;
+
+import iuh.fit.se.inventory_service.model.InventorySnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface InventorySnapshotRepository extends JpaRepository<InventorySnapshot, Long> {
+    Optional<InventorySnapshot> findFirstByProductIdOrderByLedgerSequenceDesc(Long productId);
+}
@@ -1,6 +1,8 @@
 package iuh.fit.se.inventory_service.repository;
 import iuh.fit.se.inventory_service.model.InventoryTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,4 +11,11 @@ import java.util.List;
 public interface InventoryTransactionRepository extends JpaRepository<InventoryTransaction, Long> {
     List<InventoryTransaction> findByProductId(Long productId);
     List<InventoryTransaction> findByReferenceId(Long referenceId);
+
+    // Signed sum of a product's entries in (after, upTo]; *_PENDING entries were never applied and count as zero.
+    // Entries written before the ledger was numbered have no sequence and sit before the first snapshot.
+    @Query("SELECT COALESCE(SUM(CASE t.type WHEN 'IN' THEN t.quantity WHEN 'OUT' THEN -t.quantity ELSE 0 END), 0) " +
+            "FROM InventoryTransaction t WHERE t.productId = :productId " +
+            "AND ((t.ledgerSequence > :after AND t.ledgerSequence <= :upTo) OR (:after = 0 AND t.ledgerSequence IS NULL))")
+    long sumQuantity(@Param("productId") Long productId, @Param("after") long after, @Param("upTo") long upTo);
 }
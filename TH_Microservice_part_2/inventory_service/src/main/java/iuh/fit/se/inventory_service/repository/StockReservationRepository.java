@@ -0,0 +1,17 @@
+package iuh.fit.se.inventory_service.repository;
+
+import iuh.fit.se.inventory_service.model.StockReservation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+    List<StockReservation> findByOrderIdIn(Collection<Long> orderIds);
+
+    List<StockReservation> findByStatusAndExpiresAtBeforeOrderByExpiresAtAsc(String status, LocalDateTime now, Limit limit);
+}
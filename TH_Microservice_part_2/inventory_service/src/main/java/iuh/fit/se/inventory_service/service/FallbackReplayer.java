@@ -0,0 +1,117 @@
+package iuh.fit.se.inventory_service.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.FeignException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import iuh.fit.se.inventory_service.client.ProductClient;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Re-drives the stock changes parked on inventory-update-fallback: a reservation's product-service sync, or a
+ * whole manual update, applied on the product's inventory lane like every other write. Every operation goes through the productService circuit breaker at the fallbackReplay
+ * rate. While the breaker refuses calls, or a call fails for any other reason, the rest of the poll is
+ * redelivered after app.fallback-replay.wait-interval. Only a record that cannot be parsed, or an operation
+ * the remote side rejects with a 4xx, is logged and skipped.
+ */
+@Component
+public class FallbackReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FallbackReplayer.class);
+
+    private final InventoryService inventoryService;
+    private final InventoryLaneExecutor laneExecutor;
+    private final ProductClient productClient;
+    private final ObjectMapper objectMapper;
+    private final CircuitBreaker circuitBreaker;
+    private final RateLimiter rateLimiter;
+
+    @Autowired
+    public FallbackReplayer(InventoryService inventoryService,
+                            InventoryLaneExecutor laneExecutor,
+                            ProductClient productClient,
+                            ObjectMapper objectMapper,
+                            CircuitBreakerRegistry circuitBreakerRegistry,
+                            RateLimiterRegistry rateLimiterRegistry) {
+        this.inventoryService = inventoryService;
+        this.laneExecutor = laneExecutor;
+        this.productClient = productClient;
+        this.objectMapper = objectMapper;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("productService");
+        this.rateLimiter = rateLimiterRegistry.rateLimiter("fallbackReplay");
+    }
+
+    @KafkaListener(id = "inventory-fallback-replay", topics = "inventory-update-fallback",
+            groupId = "inventory-fallback-replay", containerFactory = "fallbackKafkaListenerContainerFactory",
+            autoStartup = "${app.fallback-replay.enabled:true}")
+    public void replay(List<ConsumerRecord<String, byte[]>> records) {
+        int replayed = 0;
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            JsonNode payload;
+            try {
+                payload = objectMapper.readTree(record.value());
+            } catch (IOException | IllegalArgumentException e) {
+                // Malformed JSON or an empty value; no redelivery will make it readable
+                logger.error("Dropping unreadable {} record at offset {}", record.topic(), record.offset(), e);
+                continue;
+            }
+            try {
+                RateLimiter.waitForPermission(rateLimiter);
+                circuitBreaker.executeRunnable(() -> redrive(payload));
+                replayed++;
+            } catch (RuntimeException e) {
+                if (!rejected(e)) {
+                    throw new BatchListenerFailedException("Could not replay " + record.topic() + " record at offset "
+                            + record.offset() + ": " + e.getMessage(), e, i);
+                }
+                logger.error("Dropping {} record at offset {}: {}", record.topic(), record.offset(), e.getMessage());
+            }
+        }
+        if (replayed > 0) {
+            logger.info("Re-drove {} of {} parked stock changes", replayed, records.size());
+        }
+    }
+
+    private void redrive(JsonNode payload) {
+        long productId = payload.path("productId").asLong();
+        int quantity = payload.path("quantity").asInt();
+        String type = payload.path("type").asText();
+        String reason = payload.path("reason").asText();
+        if ("RESERVATION".equals(reason)) {
+            // Only the product-service sync of a reservation batch failed; it lowers its stock by positive quantities
+            productClient.updateStock(productId, "OUT".equals(type) ? quantity : -quantity);
+        } else {
+            JsonNode referenceId = payload.path("referenceId");
+            Long reference = referenceId.isNumber() ? referenceId.asLong() : null;
+            // Waits for the lane, so the breaker sees the outcome and the next record is not applied before it
+            try {
+                laneExecutor.submit(productId,
+                        () -> inventoryService.completePendingUpdate(productId, quantity, type, reason, reference))
+                        .join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+    }
+
+    // The remote side refused the operation itself, so sending it again gets the same answer;
+    // 408 and 429 only say it was busy
+    private static boolean rejected(RuntimeException e) {
+        return e instanceof FeignException feign && feign.status() >= 400 && feign.status() < 500
+                && feign.status() != 408 && feign.status() != 429;
+    }
+}
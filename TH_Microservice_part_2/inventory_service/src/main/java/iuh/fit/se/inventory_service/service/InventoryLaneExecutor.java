@@ -0,0 +1,72 @@
+package iuh.fit.se.inventory_service.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Routes every inventory mutation for a product to the same single-threaded lane, so updates
+ * to one product are applied strictly one after another while different products run in parallel.
+ * Each lane queues at most {@code app.inventory.lane-queue-capacity} tasks; past that, submitting
+ * blocks the caller (the Kafka consumer thread) until the lane catches up.
+ */
+@Component
+public class InventoryLaneExecutor {
+
+    private final ExecutorService[] lanes;
+
+    // Running a rejected task on the caller, as CallerRunsPolicy does, would let it overtake the tasks
+    // still queued on the lane, so the caller waits for room in the queue instead
+    private static final RejectedExecutionHandler WAIT_FOR_ROOM = (task, executor) -> {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Inventory lane is shut down");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for an inventory lane", e);
+        }
+    };
+
+    public InventoryLaneExecutor(@Value("${app.inventory.lanes:8}") int laneCount,
+                                 @Value("${app.inventory.lane-queue-capacity:1000}") int queueCapacity) {
+        this.lanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String threadName = "inventory-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, WAIT_FOR_ROOM);
+        }
+    }
+
+    public int laneOf(Long productId) {
+        return Math.floorMod(Long.hashCode(productId), lanes.length);
+    }
+
+    public <T> CompletableFuture<T> submit(Long productId, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, lanes[laneOf(productId)]);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            lane.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
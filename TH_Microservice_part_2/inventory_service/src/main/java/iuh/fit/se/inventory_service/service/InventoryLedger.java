@@ -0,0 +1,126 @@
+package iuh.fit.se.inventory_service.service;
+
+import iuh.fit.se.inventory_service.model.InVentoryItem;
+import iuh.fit.se.inventory_service.model.InventorySnapshot;
+import iuh.fit.se.inventory_service.model.InventoryTransaction;
+import iuh.fit.se.inventory_service.repository.InventoryItemRepository;
+import iuh.fit.se.inventory_service.repository.InventorySnapshotRepository;
+import iuh.fit.se.inventory_service.repository.InventoryTransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * The inventory transaction log is the source of truth for stock levels; {@link InVentoryItem#getQuantity()}
+ * is a projection of it. Each product's entries are numbered 1, 2, 3... and every {@code snapshotInterval}
+ * entries the running balance is stored as a snapshot, so a balance is one snapshot plus a short tail.
+ */
+@Service
+public class InventoryLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryLedger.class);
+    private final InventoryItemRepository inventoryItemRepository;
+    private final InventoryTransactionRepository transactionRepository;
+    private final InventorySnapshotRepository snapshotRepository;
+    private final OutboxService outboxService;
+    private final int snapshotInterval;
+
+    @Autowired
+    public InventoryLedger(InventoryItemRepository inventoryItemRepository,
+                           InventoryTransactionRepository transactionRepository,
+                           InventorySnapshotRepository snapshotRepository,
+                           OutboxService outboxService,
+                           @Value("${app.inventory.ledger.snapshot-interval:100}") int snapshotInterval) {
+        this.inventoryItemRepository = inventoryItemRepository;
+        this.transactionRepository = transactionRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.outboxService = outboxService;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    // Numbers and stores the entries, then snapshots every product that reached its interval.
+    // items must hold the locked rows of all the entries' products; they are saved with their new position.
+    public void append(Map<Long, InVentoryItem> items, List<InventoryTransaction> entries) {
+        Map<Long, Long> dueSnapshots = new TreeMap<>();
+        for (InventoryTransaction entry : entries) {
+            InVentoryItem item = items.get(entry.getProductId());
+            long sequence = position(item) + 1;
+            item.setLedgerSequence(sequence);
+            entry.setLedgerSequence(sequence);
+            if (sequence % snapshotInterval == 0) {
+                dueSnapshots.put(entry.getProductId(), sequence);
+            }
+        }
+        inventoryItemRepository.saveAll(items.values());
+        transactionRepository.saveAll(entries);
+        dueSnapshots.forEach(this::snapshot);
+    }
+
+    // Latest snapshot plus the entries after it
+    public long balance(Long productId) {
+        return balanceUpTo(productId, Long.MAX_VALUE);
+    }
+
+    // Rebuilds the item's quantity from the ledger; a corrected quantity is published like any other update
+    @Transactional
+    public Optional<InVentoryItem> replay(Long productId) {
+        return inventoryItemRepository.findLockedByProductId(productId)
+                .map(item -> {
+                    correct(item);
+                    return inventoryItemRepository.save(item);
+                });
+    }
+
+    // Same as replay; true only when the item had drifted and its quantity was changed
+    @Transactional
+    public boolean repair(Long productId) {
+        return inventoryItemRepository.findLockedByProductId(productId)
+                .filter(this::correct)
+                .map(inventoryItemRepository::save)
+                .isPresent();
+    }
+
+    private boolean correct(InVentoryItem item) {
+        Long productId = item.getProductId();
+        int quantity = Math.toIntExact(balance(productId));
+        if (quantity == item.getQuantity()) {
+            return false;
+        }
+        logger.warn("Inventory of product {} drifted from its ledger: {} -> {}", productId, item.getQuantity(), quantity);
+        String type = quantity > item.getQuantity() ? "IN" : "OUT";
+        item.setQuantity(quantity);
+        item.setLastUpdated(LocalDateTime.now());
+        outboxService.publish("inventory-updated", String.valueOf(productId), Map.of(
+                "productId", productId,
+                "quantity", quantity,
+                "type", type,
+                "reason", "LEDGER_REPLAY"
+        ));
+        return true;
+    }
+
+    private void snapshot(Long productId, long upTo) {
+        long quantity = balanceUpTo(productId, upTo);
+        snapshotRepository.save(new InventorySnapshot(null, productId, upTo, quantity, LocalDateTime.now()));
+    }
+
+    private long balanceUpTo(Long productId, long upTo) {
+        Optional<InventorySnapshot> snapshot = snapshotRepository.findFirstByProductIdOrderByLedgerSequenceDesc(productId);
+        long after = snapshot.map(InventorySnapshot::getLedgerSequence).orElse(0L);
+        long base = snapshot.map(InventorySnapshot::getQuantity).orElse(0L);
+        return base + transactionRepository.sumQuantity(productId, after, upTo);
+    }
+
+    private long position(InVentoryItem item) {
+        return item.getLedgerSequence() == null ? 0L : item.getLedgerSequence();
+    }
+}
@@ -0,0 +1,97 @@
+package iuh.fit.se.inventory_service.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Compares every inventory item with its ledger balance, a page of products per query, and replays
+ * the items that drifted. Repairs run on the products' lanes and re-check under the row lock, so an
+ * item that was brought in line in the meantime is left alone and not counted as repaired.
+ */
+@Component
+public class InventoryReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryReconciler.class);
+    private static final String PAGE_SQL =
+            "SELECT i.product_id, i.quantity, " +
+                    "COALESCE(s.quantity, 0) + COALESCE(SUM(CASE t.type WHEN 'IN' THEN t.quantity " +
+                    "WHEN 'OUT' THEN -t.quantity ELSE 0 END), 0) AS balance " +
+                    "FROM (SELECT product_id, quantity FROM in_ventory_item WHERE product_id > ? " +
+                    "ORDER BY product_id LIMIT ?) i " +
+                    "LEFT JOIN inventory_snapshot s ON s.product_id = i.product_id AND s.ledger_sequence = " +
+                    "(SELECT MAX(ledger_sequence) FROM inventory_snapshot WHERE product_id = i.product_id) " +
+                    "LEFT JOIN inventory_transaction t ON t.product_id = i.product_id " +
+                    "AND (t.ledger_sequence > COALESCE(s.ledger_sequence, 0) " +
+                    "OR (s.ledger_sequence IS NULL AND t.ledger_sequence IS NULL)) " +
+                    "GROUP BY i.product_id, i.quantity, s.quantity " +
+                    "ORDER BY i.product_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryLedger inventoryLedger;
+    private final InventoryLaneExecutor laneExecutor;
+    private final int pageSize;
+
+    @Autowired
+    public InventoryReconciler(JdbcTemplate jdbcTemplate,
+                               InventoryLedger inventoryLedger,
+                               InventoryLaneExecutor laneExecutor,
+                               @Value("${app.inventory.ledger.reconcile-page-size:500}") int pageSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.inventoryLedger = inventoryLedger;
+        this.laneExecutor = laneExecutor;
+        this.pageSize = pageSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.ledger.reconcile-interval:300000}",
+            initialDelayString = "${app.inventory.ledger.reconcile-interval:300000}")
+    public int reconcile() {
+        long afterProductId = 0L;
+        int checked = 0;
+        int repaired = 0;
+        while (true) {
+            List<Long> productIds = new ArrayList<>();
+            List<Long> drifted = new ArrayList<>();
+            jdbcTemplate.query(PAGE_SQL, rs -> {
+                long productId = rs.getLong("product_id");
+                productIds.add(productId);
+                if (rs.getLong("quantity") != rs.getLong("balance")) {
+                    drifted.add(productId);
+                }
+            }, afterProductId, pageSize);
+
+            List<CompletableFuture<Boolean>> repairs = new ArrayList<>();
+            for (Long productId : drifted) {
+                repairs.add(laneExecutor.submit(productId, () -> inventoryLedger.repair(productId)));
+            }
+            for (CompletableFuture<Boolean> repair : repairs) {
+                try {
+                    if (repair.join()) {
+                        repaired++;
+                    }
+                } catch (Exception e) {
+                    logger.error("Failed to replay inventory from the ledger", e);
+                }
+            }
+
+            checked += productIds.size();
+            if (productIds.size() < pageSize) {
+                break;
+            }
+            afterProductId = productIds.get(productIds.size() - 1);
+        }
+
+        if (repaired > 0) {
+            logger.warn("Reconciled {} of {} inventory items with the ledger", repaired, checked);
+        }
+        return repaired;
+    }
+}
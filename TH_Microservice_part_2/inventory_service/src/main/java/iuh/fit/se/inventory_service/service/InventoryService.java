@@ -1,6 +1,6 @@
 package iuh.fit.se.inventory_service.service;
 
-
+import com.fasterxml.jackson.databind.SequenceWriter;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
 import iuh.fit.se.inventory_service.client.ProductClient;
@@ -8,18 +8,22 @@ import iuh.fit.se.inventory_service.model.InVentoryItem;
 import iuh.fit.se.inventory_service.model.InventoryTransaction;
 import iuh.fit.se.inventory_service.repository.InventoryItemRepository;
 import iuh.fit.se.inventory_service.repository.InventoryTransactionRepository;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class InventoryService {
@@ -28,21 +32,43 @@ public class InventoryService {
     private final InventoryItemRepository inventoryItemRepository;
     private final InventoryTransactionRepository transactionRepository;
     private final ProductClient productClient;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
+    private final InventoryLedger inventoryLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
 
     @Autowired
     public InventoryService(InventoryItemRepository inventoryItemRepository,
                             InventoryTransactionRepository transactionRepository,
                             ProductClient productClient,
-                            KafkaTemplate<String, Object> kafkaTemplate) {
+                            OutboxService outboxService,
+                            InventoryLedger inventoryLedger,
+                            TransactionTemplate transactionTemplate,
+                            EntityManager entityManager) {
         this.inventoryItemRepository = inventoryItemRepository;
         this.transactionRepository = transactionRepository;
         this.productClient = productClient;
-        this.kafkaTemplate = kafkaTemplate;
+        this.outboxService = outboxService;
+        this.inventoryLedger = inventoryLedger;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+    }
+
+    public List<InVentoryItem> getInventoryItems(Long afterId, int limit) {
+        return inventoryItemRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId, Limit.of(limit));
     }
 
-    public List<InVentoryItem> getAllInventoryItems() {
-        return inventoryItemRepository.findAll();
+    // NDJSON export of the item rows as stored; the ledger reconciler keeps their quantities in line with the
+    // ledger. Each item is detached once written
+    @Transactional(readOnly = true)
+    public void writeAllInventoryItems(SequenceWriter lines) throws IOException {
+        try (lines; Stream<InVentoryItem> items = inventoryItemRepository.streamAllByOrderByIdAsc()) {
+            for (Iterator<InVentoryItem> iterator = items.iterator(); iterator.hasNext(); ) {
+                InVentoryItem item = iterator.next();
+                lines.write(item);
+                entityManager.detach(item);
+            }
+        }
     }
 
     public Optional<InVentoryItem> getInventoryItemById(Long id) {
@@ -57,14 +83,26 @@ public class InventoryService {
     @Retry(name = "productService", fallbackMethod = "updateInventoryFallback")
     @Transactional
     public InVentoryItem updateInventory(Long productId, Integer quantity, String type, String reason, Long referenceId) {
-        // Get or create inventory item
-        InVentoryItem inventoryItem = inventoryItemRepository.findByProductId(productId)
+        return applyUpdate(productId, quantity, type, reason, referenceId);
+    }
+
+    // Re-drives an update parked by updateInventoryFallback. Its *_PENDING ledger entry stays as the record of the
+    // failed attempt; the update itself is appended now.
+    public InVentoryItem completePendingUpdate(Long productId, Integer quantity, String type, String reason, Long referenceId) {
+        return transactionTemplate.execute(status -> applyUpdate(productId, quantity, type, reason, referenceId));
+    }
+
+    private InVentoryItem applyUpdate(Long productId, Integer quantity, String type, String reason, Long referenceId) {
+        // Get or create inventory item, locked for the ledger append
+        InVentoryItem inventoryItem = inventoryItemRepository.findLockedByProductId(productId)
                 .orElseGet(() -> {
                     InVentoryItem newItem = new InVentoryItem();
                     newItem.setProductId(productId);
                     newItem.setQuantity(0);
+                    newItem.setReservedQuantity(0);
                     newItem.setLocation("DEFAULT");
                     newItem.setLastUpdated(LocalDateTime.now());
+                    newItem.setLedgerSequence(0L);
                     return inventoryItemRepository.save(newItem);
                 });
 
@@ -72,7 +110,9 @@ public class InventoryService {
         if ("IN".equals(type)) {
             inventoryItem.setQuantity(inventoryItem.getQuantity() + quantity);
         } else if ("OUT".equals(type)) {
-            if (inventoryItem.getQuantity() < quantity) {
+            // Stock held for orders is not available to manual adjustments
+            int reserved = inventoryItem.getReservedQuantity() == null ? 0 : inventoryItem.getReservedQuantity();
+            if (inventoryItem.getQuantity() - reserved < quantity) {
                 throw new RuntimeException("Insufficient inventory for product: " + productId);
             }
             inventoryItem.setQuantity(inventoryItem.getQuantity() - quantity);
@@ -89,13 +129,13 @@ public class InventoryService {
         transaction.setReason(reason);
         transaction.setReferenceId(referenceId);
         transaction.setTransactionDate(LocalDateTime.now());
-        transactionRepository.save(transaction);
+        inventoryLedger.append(Map.of(productId, updatedItem), List.of(transaction));
 
-        // Update product stock in Product Service
-        productClient.updateStock(productId, "IN".equals(type) ? quantity : -quantity);
+        // Update product stock in Product Service; it lowers its stock by positive quantities
+        productClient.updateStock(productId, "IN".equals(type) ? -quantity : quantity);
 
         // Send inventory updated event
-        kafkaTemplate.send("inventory-updated", Map.of(
+        outboxService.publish("inventory-updated", String.valueOf(productId), Map.of(
                 "productId", productId,
                 "quantity", inventoryItem.getQuantity(),
                 "type", type,
@@ -109,37 +149,45 @@ public class InventoryService {
     public InVentoryItem updateInventoryFallback(Long productId, Integer quantity, String type, String reason, Long referenceId, Exception ex) {
         logger.error("Fallback executed for updateInventory. ProductId: {}, Error: {}", productId, ex.getMessage());
 
-        // Get or create inventory item without updating the product service
-        InVentoryItem inventoryItem = inventoryItemRepository.findByProductId(productId)
-                .orElseGet(() -> {
-                    InVentoryItem newItem = new InVentoryItem();
-                    newItem.setProductId(productId);
-                    newItem.setQuantity(0);
-                    newItem.setLocation("DEFAULT");
-                    newItem.setLastUpdated(LocalDateTime.now());
-                    return inventoryItemRepository.save(newItem);
-                });
-
-        // Create transaction record for manual processing
-        InventoryTransaction transaction = new InventoryTransaction();
-        transaction.setProductId(productId);
-        transaction.setQuantity(quantity);
-        transaction.setType(type + "_PENDING");
-        transaction.setReason(reason);
-        transaction.setReferenceId(referenceId);
-        transaction.setTransactionDate(LocalDateTime.now());
-        transactionRepository.save(transaction);
-
-        // Send to a special topic for manual processing
-        kafkaTemplate.send("inventory-update-fallback", Map.of(
-                "productId", productId,
-                "quantity", quantity,
-                "type", type,
-                "reason", reason,
-                "referenceId", referenceId
-        ));
+        // Record the transaction for manual processing; it joins the ledger but is not applied
+        return transactionTemplate.execute(status -> {
+            // Get or create inventory item without updating the product service
+            InVentoryItem inventoryItem = inventoryItemRepository.findLockedByProductId(productId)
+                    .orElseGet(() -> {
+                        InVentoryItem newItem = new InVentoryItem();
+                        newItem.setProductId(productId);
+                        newItem.setQuantity(0);
+                        newItem.setReservedQuantity(0);
+                        newItem.setLocation("DEFAULT");
+                        newItem.setLastUpdated(LocalDateTime.now());
+                        newItem.setLedgerSequence(0L);
+                        return inventoryItemRepository.save(newItem);
+                    });
+
+            InventoryTransaction transaction = new InventoryTransaction();
+            transaction.setProductId(productId);
+            transaction.setQuantity(quantity);
+            transaction.setType(type + "_PENDING");
+            transaction.setReason(reason);
+            transaction.setReferenceId(referenceId);
+            transaction.setTransactionDate(LocalDateTime.now());
+            inventoryLedger.append(Map.of(productId, inventoryItem), List.of(transaction));
+
+            // Send to a special topic for manual processing
+            outboxService.publish("inventory-update-fallback", String.valueOf(productId), Map.of(
+                    "productId", productId,
+                    "quantity", quantity,
+                    "type", type,
+                    "reason", reason,
+                    "referenceId", referenceId
+            ));
+
+            return inventoryItem;
+        });
+    }
 
-        return inventoryItem;
+    public Optional<InVentoryItem> replayInventoryItem(Long productId) {
+        return inventoryLedger.replay(productId);
     }
 
     public List<InventoryTransaction> getTransactionsByProductId(Long productId) {
@@ -149,40 +197,4 @@ public class InventoryService {
     public List<InventoryTransaction> getTransactionsByReferenceId(Long referenceId) {
         return transactionRepository.findByReferenceId(referenceId);
     }
-
-    @KafkaListener(topics = "order-created", groupId = "inventory-group")
-    public void handleOrderCreated(Map<String, Object> orderData) {
-        try {
-            Long orderId = Long.valueOf(orderData.get("id").toString());
-            List<Map<String, Object>> items = (List<Map<String, Object>>) orderData.get("items");
-
-            for (Map<String, Object> item : items) {
-                Long productId = Long.valueOf(item.get("productId").toString());
-                Integer quantity = Integer.valueOf(item.get("quantity").toString());
-
-                // Reserve inventory for the order
-                updateInventory(productId, quantity, "OUT", "ORDER", orderId);
-            }
-        } catch (Exception e) {
-            logger.error("Error processing order-created event", e);
-        }
-    }
-
-    @KafkaListener(topics = "order-cancelled", groupId = "inventory-group")
-    public void handleOrderCancelled(Map<String, Object> orderData) {
-        try {
-            Long orderId = Long.valueOf(orderData.get("id").toString());
-            List<Map<String, Object>> items = (List<Map<String, Object>>) orderData.get("items");
-
-            for (Map<String, Object> item : items) {
-                Long productId = Long.valueOf(item.get("productId").toString());
-                Integer quantity = Integer.valueOf(item.get("quantity").toString());
-
-                // Return inventory for the cancelled order
-                updateInventory(productId, quantity, "IN", "ORDER_CANCELLED", orderId);
-            }
-        } catch (Exception e) {
-            logger.error("Error processing order-cancelled event", e);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,43 @@
+package iuh.fit.se.inventory_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.inventory_service.model.OutboxEvent;
+import iuh.fit.se.inventory_service.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Service
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    // Joins the caller's transaction, so the event is only relayed if the business change commits
+    @Transactional
+    public void publish(String topic, String key, Object event) {
+        OutboxEvent outboxEvent = new OutboxEvent();
+        outboxEvent.setTopic(topic);
+        outboxEvent.setMessageKey(key);
+        outboxEvent.setPayload(toJson(topic, event));
+        outboxEvent.setCreatedAt(LocalDateTime.now());
+        outboxEventRepository.save(outboxEvent);
+    }
+
+    private String toJson(String topic, Object event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Unable to serialize event for topic: " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package iuh.fit.se.inventory_service.service;
+
+import iuh.fit.se.inventory_service.client.ProductClient;
+import iuh.fit.se.inventory_service.config.KafkaRetryConfig;
+import iuh.fit.se.inventory_service.event.OrderEvent;
+import iuh.fit.se.inventory_service.event.PaymentEvent;
+import iuh.fit.se.inventory_service.model.InVentoryItem;
+import iuh.fit.se.inventory_service.model.InventoryTransaction;
+import iuh.fit.se.inventory_service.model.StockReservation;
+import iuh.fit.se.inventory_service.repository.InventoryItemRepository;
+import iuh.fit.se.inventory_service.repository.StockReservationRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Owns product stock for orders. order-created holds the stock of every line for a limited time,
+ * payment-completed takes it off the shelf, and order-cancelled or the end of the hold gives it back.
+ * The product service hears about it once per product and batch: a hold lowers its stock, a release
+ * raises it again, and a confirmation leaves it alone. An order-cancelled that arrives before its order-created
+ * still records the lines as released, so the order-created that follows holds nothing.
+ * The events of a lane that fails are moved to the inventory-order-events retry chain, and so is a
+ * payment-completed that arrives before its order's stock is held; applying an event twice is harmless,
+ * so the lines that did go through are skipped there.
+ */
+@Service
+public class ReservationEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationEngine.class);
+    private static final LogAccessor logAccessor = new LogAccessor(ReservationEngine.class);
+
+    private final InventoryItemRepository inventoryItemRepository;
+    private final StockReservationRepository reservationRepository;
+    private final InventoryLedger inventoryLedger;
+    private final ProductClient productClient;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryLaneExecutor laneExecutor;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final Duration reservationTtl;
+    private final int expiryBatchSize;
+    private final Duration sendTimeout;
+
+    @Autowired
+    public ReservationEngine(InventoryItemRepository inventoryItemRepository,
+                             StockReservationRepository reservationRepository,
+                             InventoryLedger inventoryLedger,
+                             ProductClient productClient,
+                             OutboxService outboxService,
+                             TransactionTemplate transactionTemplate,
+                             InventoryLaneExecutor laneExecutor,
+                             KafkaTemplate<String, Object> kafkaTemplate,
+                             @Value("${app.inventory.reservation.ttl:15m}") Duration reservationTtl,
+                             @Value("${app.inventory.reservation.expiry-batch-size:500}") int expiryBatchSize,
+                             @Value("${app.outbox.send-timeout:10s}") Duration sendTimeout) {
+        this.inventoryItemRepository = inventoryItemRepository;
+        this.reservationRepository = reservationRepository;
+        this.inventoryLedger = inventoryLedger;
+        this.productClient = productClient;
+        this.outboxService = outboxService;
+        this.transactionTemplate = transactionTemplate;
+        this.laneExecutor = laneExecutor;
+        this.kafkaTemplate = kafkaTemplate;
+        this.reservationTtl = reservationTtl;
+        this.expiryBatchSize = expiryBatchSize;
+        this.sendTimeout = sendTimeout;
+    }
+
+    @KafkaListener(id = "inventory-order-batch", topics = {"order-created", "order-cancelled", "payment-completed"},
+            groupId = "inventory-group", containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${app.inventory.consumer.batch-enabled:true}")
+    public void handleOrderEvents(List<ConsumerRecord<String, Object>> records) {
+        List<ProducerRecord<String, Object>> moved = new ArrayList<>();
+        List<ConsumerRecord<String, Object>> decoded = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, Object> record : records) {
+            if (record.value() != null) {
+                decoded.add(record);
+                continue;
+            }
+            // Undecodable, so retrying cannot help; it goes to the dead-letter topic as it was received
+            DeserializationException failure = SerializationUtils.getExceptionFromHeader(record,
+                    SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, logAccessor);
+            logger.error("Undecodable {} event at offset {}", record.topic(), record.offset(), failure);
+            moved.add(new ProducerRecord<>(KafkaRetryConfig.ORDER_EVENTS_TOPIC + KafkaRetryConfig.DLT_SUFFIX,
+                    record.key(), failure == null ? null : failure.getData()));
+        }
+        for (ConsumerRecord<String, Object> record : process(decoded)) {
+            moved.add(new ProducerRecord<>(KafkaRetryConfig.ORDER_EVENTS_TOPIC, record.key(), record.value()));
+        }
+        // Waits for the acknowledgements so the poll is only committed once the failed events are safe
+        send(moved);
+    }
+
+    @KafkaListener(id = "inventory-order-events", topics = {"order-created", "order-cancelled", "payment-completed"},
+            groupId = "inventory-group", autoStartup = "#{!${app.inventory.consumer.batch-enabled:true}}")
+    public void handleOrderEvent(ConsumerRecord<String, Object> record) {
+        handleOrderEvents(List.of(record));
+    }
+
+    // Events whose lane failed on the main topics, retried off the main partitions; see KafkaRetryConfig
+    @RetryableTopic(attempts = "${app.kafka.retry.attempts:4}", numPartitions = "${app.kafka.retry.partitions:3}",
+            backoff = @Backoff(delayExpression = "${app.kafka.retry.delay:1000}",
+                    multiplierExpression = "${app.kafka.retry.multiplier:5}",
+                    maxDelayExpression = "${app.kafka.retry.max-delay:60000}"),
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            dltTopicSuffix = KafkaRetryConfig.DLT_SUFFIX, kafkaTemplate = "kafkaTemplate")
+    @KafkaListener(id = "inventory-order-retry", topics = KafkaRetryConfig.ORDER_EVENTS_TOPIC, groupId = "inventory-group")
+    public void retryOrderEvent(ConsumerRecord<String, Object> record) {
+        if (!process(List.of(record)).isEmpty()) {
+            throw new RuntimeException("Failed to apply the reservations of order event: " + record.key());
+        }
+    }
+
+    // Gives back the stock of holds whose order was neither paid nor cancelled in time
+    @Scheduled(fixedDelayString = "${app.inventory.reservation.expiry-interval:10000}")
+    public void expireReservations() {
+        List<StockReservation> expired = reservationRepository.findByStatusAndExpiresAtBeforeOrderByExpiresAtAsc(
+                "HELD", LocalDateTime.now(), Limit.of(expiryBatchSize));
+        if (expired.isEmpty()) {
+            return;
+        }
+        apply(expired.stream()
+                .map(reservation -> new ReservationCommand(Action.EXPIRE, reservation.getOrderId(),
+                        reservation.getProductId(), reservation.getQuantity(), null))
+                .toList());
+        logger.info("Expired {} stock reservations", expired.size());
+    }
+
+    // Applies the events and returns the ones with a line that could not be applied
+    private Set<ConsumerRecord<String, Object>> process(List<ConsumerRecord<String, Object>> records) {
+        List<ReservationCommand> commands = new ArrayList<>();
+        Map<Long, ConsumerRecord<String, Object>> payments = new LinkedHashMap<>();
+        for (ConsumerRecord<String, Object> record : records) {
+            if (record.value() instanceof PaymentEvent payment) {
+                payments.put(payment.orderId(), record);
+            } else {
+                collectCommands(record, commands);
+            }
+        }
+        Set<ConsumerRecord<String, Object>> failed = new LinkedHashSet<>(apply(commands));
+
+        // Confirmed after the holds above, so an order created and paid within one poll is confirmed too
+        if (!payments.isEmpty()) {
+            List<ReservationCommand> confirms = confirmCommands(payments, failed);
+            failed.addAll(apply(confirms));
+        }
+        return failed;
+    }
+
+    // Told apart by the order's status rather than the topic, so a retried event reads the same
+    private void collectCommands(ConsumerRecord<String, Object> record, List<ReservationCommand> commands) {
+        OrderEvent order = (OrderEvent) record.value();
+        Action action = "CANCELLED".equals(order.status()) ? Action.RELEASE : Action.HOLD;
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderEvent.Item item : order.items()) {
+            quantities.merge(item.productId(), item.quantity(), Integer::sum);
+        }
+        quantities.forEach((productId, quantity) ->
+                commands.add(new ReservationCommand(action, order.orderId(), productId, quantity, record)));
+    }
+
+    // A payment whose order holds no reservation yet overtook its order-created; it is added to failed,
+    // so the retry chain gives the order-created time to be applied
+    private List<ReservationCommand> confirmCommands(Map<Long, ConsumerRecord<String, Object>> payments,
+                                                     Set<ConsumerRecord<String, Object>> failed) {
+        List<StockReservation> reservations = reservationRepository.findByOrderIdIn(payments.keySet());
+        Map<Long, List<StockReservation>> byOrder = reservations.stream()
+                .collect(Collectors.groupingBy(StockReservation::getOrderId));
+        List<ReservationCommand> commands = new ArrayList<>();
+        payments.forEach((orderId, record) -> {
+            List<StockReservation> orderReservations = byOrder.get(orderId);
+            if (orderReservations == null) {
+                logger.warn("Order {} was paid before its stock was held; retrying the payment", orderId);
+                failed.add(record);
+                return;
+            }
+            for (StockReservation reservation : orderReservations) {
+                commands.add(new ReservationCommand(Action.CONFIRM, orderId, reservation.getProductId(),
+                        reservation.getQuantity(), record));
+            }
+        });
+        return commands;
+    }
+
+    // Each lane applies its own products in its own transaction; lanes run in parallel.
+    // The product service is then told the net change of every product in one call each.
+    // Returns the events behind the commands of the lanes that failed.
+    private Set<ConsumerRecord<String, Object>> apply(List<ReservationCommand> commands) {
+        if (commands.isEmpty()) {
+            return Set.of();
+        }
+        List<List<ReservationCommand>> lanes = new ArrayList<>(commands.stream()
+                .collect(Collectors.groupingBy(command -> laneExecutor.laneOf(command.productId())))
+                .values());
+        List<CompletableFuture<Map<Long, Integer>>> laneResults = new ArrayList<>();
+        for (List<ReservationCommand> laneCommands : lanes) {
+            laneResults.add(laneExecutor.submit(laneCommands.get(0).productId(),
+                    () -> transactionTemplate.execute(status -> applyCommands(laneCommands))));
+        }
+
+        Map<Long, Integer> stockTaken = new TreeMap<>();
+        Set<ConsumerRecord<String, Object>> failed = new LinkedHashSet<>();
+        for (int i = 0; i < lanes.size(); i++) {
+            try {
+                laneResults.get(i).join().forEach((productId, quantity) -> stockTaken.merge(productId, quantity, Integer::sum));
+            } catch (Exception e) {
+                logger.error("Failed to apply {} reservation commands", lanes.get(i).size(), e);
+                lanes.get(i).stream().map(ReservationCommand::source).filter(Objects::nonNull).forEach(failed::add);
+            }
+        }
+        syncProductStock(stockTaken);
+        return failed;
+    }
+
+    private void send(Collection<ProducerRecord<String, Object>> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<?>> sends = records.stream()
+                .<CompletableFuture<?>>map(kafkaTemplate::send)
+                .toList();
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                    .get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Fails the poll; the error handler then moves all of it to the retry topic
+            throw new RuntimeException("Failed to move " + records.size() + " order events to the retry topic", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while moving order events to the retry topic", e);
+        }
+    }
+
+    // Locks the items of the lane's products once, applies the commands in order and returns, per product,
+    // how much stock left the shelf (positive) or came back (negative) as far as new orders are concerned
+    private Map<Long, Integer> applyCommands(List<ReservationCommand> commands) {
+        TreeSet<Long> productIds = commands.stream().map(ReservationCommand::productId)
+                .collect(Collectors.toCollection(TreeSet::new));
+        Map<Long, InVentoryItem> items = inventoryItemRepository.findByProductIdInOrderByProductIdAsc(productIds)
+                .stream()
+                .collect(Collectors.toMap(InVentoryItem::getProductId, Function.identity(), (first, duplicate) -> first));
+
+        Map<Long, Map<Long, StockReservation>> reservations = new HashMap<>();
+        List<Long> orderIds = commands.stream().map(ReservationCommand::orderId).distinct().toList();
+        for (StockReservation reservation : reservationRepository.findByOrderIdIn(orderIds)) {
+            if (productIds.contains(reservation.getProductId())) {
+                reservations.computeIfAbsent(reservation.getOrderId(), id -> new HashMap<>())
+                        .put(reservation.getProductId(), reservation);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Integer> stockTaken = new TreeMap<>();
+        List<InventoryTransaction> entries = new ArrayList<>();
+        List<StockReservation> changed = new ArrayList<>();
+        for (ReservationCommand command : commands) {
+            InVentoryItem item = items.computeIfAbsent(command.productId(), this::newInventoryItem);
+            StockReservation reservation = reservations.computeIfAbsent(command.orderId(), id -> new HashMap<>())
+                    .get(command.productId());
+            int taken = switch (command.action()) {
+                case HOLD -> hold(command, item, reservation, reservations, changed, now);
+                case CONFIRM -> confirm(item, reservation, entries, changed, now);
+                case RELEASE -> release(command, item, reservation, reservations, entries, changed, now);
+                case EXPIRE -> expire(item, reservation, changed, now);
+            };
+            if (taken != 0) {
+                stockTaken.merge(command.productId(), taken, Integer::sum);
+            }
+        }
+
+        // The ledger saves the items along with their entries
+        inventoryLedger.append(items, entries);
+        reservationRepository.saveAll(changed);
+
+        for (Long productId : productIds) {
+            InVentoryItem item = items.get(productId);
+            outboxService.publish("inventory-updated", String.valueOf(productId), Map.of(
+                    "productId", productId,
+                    "quantity", item.getQuantity(),
+                    "reservedQuantity", reserved(item),
+                    "type", stockTaken.getOrDefault(productId, 0) > 0 ? "OUT" : "IN",
+                    "reason", "RESERVATION"
+            ));
+        }
+        return stockTaken;
+    }
+
+    private int hold(ReservationCommand command, InVentoryItem item, StockReservation existing,
+                     Map<Long, Map<Long, StockReservation>> reservations, List<StockReservation> changed,
+                     LocalDateTime now) {
+        // A redelivered order-created finds its reservation already there
+        if (existing != null) {
+            return 0;
+        }
+        boolean available = available(item) >= command.quantity();
+        StockReservation reservation = new StockReservation(null, command.orderId(), command.productId(),
+                command.quantity(), available ? "HELD" : "REJECTED", now.plus(reservationTtl), now, now);
+        reservations.get(command.orderId()).put(command.productId(), reservation);
+        changed.add(reservation);
+
+        if (!available) {
+            logger.warn("Insufficient inventory for product: {}", command.productId());
+            outboxService.publish("inventory-reservation-failed", String.valueOf(command.orderId()), Map.of(
+                    "orderId", command.orderId(),
+                    "productId", command.productId(),
+                    "quantity", command.quantity(),
+                    "available", available(item)
+            ));
+            return 0;
+        }
+        item.setReservedQuantity(reserved(item) + command.quantity());
+        item.setLastUpdated(now);
+        return command.quantity();
+    }
+
+    // A held reservation leaves the shelf. One that expired or was rejected is taken again if the stock is still there.
+    private int confirm(InVentoryItem item, StockReservation reservation, List<InventoryTransaction> entries,
+                        List<StockReservation> changed, LocalDateTime now) {
+        if (reservation == null || "CONFIRMED".equals(reservation.getStatus()) || "RELEASED".equals(reservation.getStatus())) {
+            return 0;
+        }
+        int quantity = reservation.getQuantity();
+        int taken = 0;
+        if ("HELD".equals(reservation.getStatus())) {
+            item.setReservedQuantity(reserved(item) - quantity);
+        } else if (available(item) >= quantity) {
+            taken = quantity;
+        } else {
+            logger.warn("Order {} was paid but product {} no longer has {} in stock",
+                    reservation.getOrderId(), reservation.getProductId(), quantity);
+            return 0;
+        }
+        item.setQuantity(item.getQuantity() - quantity);
+        item.setLastUpdated(now);
+        entries.add(ledgerEntry(reservation, "OUT", "ORDER", now));
+        reservation.setStatus("CONFIRMED");
+        reservation.setUpdatedAt(now);
+        changed.add(reservation);
+        return taken;
+    }
+
+    private int release(ReservationCommand command, InVentoryItem item, StockReservation reservation,
+                        Map<Long, Map<Long, StockReservation>> reservations, List<InventoryTransaction> entries,
+                        List<StockReservation> changed, LocalDateTime now) {
+        // order-cancelled overtook order-created: a released reservation is left behind, so the late hold takes nothing
+        if (reservation == null) {
+            StockReservation released = new StockReservation(null, command.orderId(), command.productId(),
+                    command.quantity(), "RELEASED", now, now, now);
+            reservations.get(command.orderId()).put(command.productId(), released);
+            changed.add(released);
+            return 0;
+        }
+        int quantity = reservation.getQuantity();
+        if ("HELD".equals(reservation.getStatus())) {
+            item.setReservedQuantity(reserved(item) - quantity);
+        } else if ("CONFIRMED".equals(reservation.getStatus())) {
+            // Already off the shelf, so it goes back through the ledger
+            item.setQuantity(item.getQuantity() + quantity);
+            entries.add(ledgerEntry(reservation, "IN", "ORDER_CANCELLED", now));
+        } else {
+            return 0;
+        }
+        item.setLastUpdated(now);
+        reservation.setStatus("RELEASED");
+        reservation.setUpdatedAt(now);
+        changed.add(reservation);
+        return -quantity;
+    }
+
+    // Re-checked under the row lock: the order may have been paid or cancelled since the expiry scan
+    private int expire(InVentoryItem item, StockReservation reservation, List<StockReservation> changed, LocalDateTime now) {
+        if (reservation == null || !"HELD".equals(reservation.getStatus()) || reservation.getExpiresAt().isAfter(now)) {
+            return 0;
+        }
+        item.setReservedQuantity(reserved(item) - reservation.getQuantity());
+        item.setLastUpdated(now);
+        reservation.setStatus("EXPIRED");
+        reservation.setUpdatedAt(now);
+        changed.add(reservation);
+        return -reservation.getQuantity();
+    }
+
+    // One product-service call per product and batch; positive quantities lower its stock
+    private void syncProductStock(Map<Long, Integer> stockTaken) {
+        for (Map.Entry<Long, Integer> entry : stockTaken.entrySet()) {
+            if (entry.getValue() == 0) {
+                continue;
+            }
+            try {
+                productClient.updateStock(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                logger.error("Failed to sync stock for product: {}, Error: {}", entry.getKey(), e.getMessage());
+                outboxService.publish("inventory-update-fallback", String.valueOf(entry.getKey()), Map.of(
+                        "productId", entry.getKey(),
+                        "quantity", Math.abs(entry.getValue()),
+                        "type", entry.getValue() > 0 ? "OUT" : "IN",
+                        "reason", "RESERVATION"
+                ));
+            }
+        }
+    }
+
+    private InventoryTransaction ledgerEntry(StockReservation reservation, String type, String reason, LocalDateTime now) {
+        InventoryTransaction transaction = new InventoryTransaction();
+        transaction.setProductId(reservation.getProductId());
+        transaction.setQuantity(reservation.getQuantity());
+        transaction.setType(type);
+        transaction.setReason(reason);
+        transaction.setReferenceId(reservation.getOrderId());
+        transaction.setTransactionDate(now);
+        return transaction;
+    }
+
+    private InVentoryItem newInventoryItem(Long productId) {
+        InVentoryItem newItem = new InVentoryItem();
+        newItem.setProductId(productId);
+        newItem.setQuantity(0);
+        newItem.setReservedQuantity(0);
+        newItem.setLocation("DEFAULT");
+        newItem.setLastUpdated(LocalDateTime.now());
+        newItem.setLedgerSequence(0L);
+        return newItem;
+    }
+
+    private int available(InVentoryItem item) {
+        return item.getQuantity() - reserved(item);
+    }
+
+    private int reserved(InVentoryItem item) {
+        return item.getReservedQuantity() == null ? 0 : item.getReservedQuantity();
+    }
+
+    private enum Action {
+        HOLD, CONFIRM, RELEASE, EXPIRE
+    }
+
+    // source is the event the command came from, null for expiries
+    private record ReservationCommand(Action action, Long orderId, Long productId, int quantity,
+                                      ConsumerRecord<String, Object> source) {
+    }
+}
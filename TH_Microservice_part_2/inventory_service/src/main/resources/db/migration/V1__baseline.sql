@@ -0,0 +1,38 @@
+-- Baseline schema. Every statement is idempotent, so it also applies to a schema
+-- that ddl-auto created before Flyway took over (baseline-version 0).
+
+CREATE SEQUENCE IF NOT EXISTS inventory_item_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS inventory_transaction_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS in_ventory_item (
+    id           bigint PRIMARY KEY,
+    product_id   bigint,
+    quantity     integer,
+    location     varchar(255),
+    last_updated timestamp(6)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_inventory_item_product_id ON in_ventory_item (product_id);
+
+CREATE TABLE IF NOT EXISTS inventory_transaction (
+    id               bigint PRIMARY KEY,
+    product_id       bigint,
+    quantity         integer,
+    type             varchar(255),
+    reason           varchar(255),
+    reference_id     bigint,
+    transaction_date timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id          bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    topic       varchar(255),
+    message_key varchar(255),
+    payload     text,
+    created_at  timestamp(6),
+    sent_at     timestamp(6)
+);
+CREATE INDEX IF NOT EXISTS idx_outbox_event_sent_at ON outbox_event (sent_at, id);
+
+-- Rows written with the former identity ids may be ahead of the sequences
+SELECT setval('inventory_item_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM in_ventory_item) + 50, (SELECT last_value FROM inventory_item_seq)));
+SELECT setval('inventory_transaction_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM inventory_transaction) + 50, (SELECT last_value FROM inventory_transaction_seq)));
@@ -0,0 +1,41 @@
+-- Numbers each product's inventory transactions as a ledger and adds balance snapshots.
+
+ALTER TABLE inventory_transaction ADD COLUMN IF NOT EXISTS ledger_sequence bigint;
+ALTER TABLE in_ventory_item ADD COLUMN IF NOT EXISTS ledger_sequence bigint;
+
+-- Existing entries take their position in id order
+UPDATE inventory_transaction t
+SET ledger_sequence = n.seq
+FROM (SELECT id, row_number() OVER (PARTITION BY product_id ORDER BY id) AS seq
+      FROM inventory_transaction) n
+WHERE t.id = n.id AND t.ledger_sequence IS NULL;
+
+-- Items whose stock was set outside the transaction log get an opening entry, so replay keeps their quantity
+INSERT INTO inventory_transaction (id, product_id, quantity, type, reason, reference_id, transaction_date, ledger_sequence)
+SELECT nextval('inventory_transaction_seq'), b.product_id, abs(b.quantity - b.balance),
+       CASE WHEN b.quantity > b.balance THEN 'IN' ELSE 'OUT' END, 'LEDGER_OPENING', NULL, now(), b.position + 1
+FROM (SELECT i.product_id, i.quantity,
+             COALESCE(SUM(CASE t.type WHEN 'IN' THEN t.quantity WHEN 'OUT' THEN -t.quantity ELSE 0 END), 0) AS balance,
+             COALESCE(MAX(t.ledger_sequence), 0) AS position
+      FROM in_ventory_item i
+      LEFT JOIN inventory_transaction t ON t.product_id = i.product_id
+      GROUP BY i.product_id, i.quantity) b
+WHERE b.quantity <> b.balance;
+
+UPDATE in_ventory_item i
+SET ledger_sequence = COALESCE((SELECT MAX(t.ledger_sequence) FROM inventory_transaction t
+                                WHERE t.product_id = i.product_id), 0)
+WHERE i.ledger_sequence IS NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_inventory_transaction_ledger ON inventory_transaction (product_id, ledger_sequence);
+
+CREATE SEQUENCE IF NOT EXISTS inventory_snapshot_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS inventory_snapshot (
+    id              bigint PRIMARY KEY,
+    product_id      bigint,
+    ledger_sequence bigint,
+    quantity        bigint,
+    created_at      timestamp(6)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_inventory_snapshot_ledger ON inventory_snapshot (product_id, ledger_sequence);
@@ -0,0 +1,18 @@
+-- Stock held for orders between order-created and payment-completed / order-cancelled / expiry.
+
+ALTER TABLE in_ventory_item ADD COLUMN IF NOT EXISTS reserved_quantity integer NOT NULL DEFAULT 0;
+
+CREATE SEQUENCE IF NOT EXISTS stock_reservation_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS stock_reservation (
+    id         bigint PRIMARY KEY,
+    order_id   bigint,
+    product_id bigint,
+    quantity   integer,
+    status     varchar(255),
+    expires_at timestamp(6),
+    created_at timestamp(6),
+    updated_at timestamp(6)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_stock_reservation_order_product ON stock_reservation (order_id, product_id);
+CREATE INDEX IF NOT EXISTS idx_stock_reservation_expiry ON stock_reservation (status, expires_at);
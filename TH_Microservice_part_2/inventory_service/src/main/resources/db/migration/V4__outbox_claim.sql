@@ -0,0 +1,3 @@
+-- A relay claims the rows it is sending instead of holding their row locks while Kafka acknowledges.
+-- A claim older than app.outbox.claim-timeout belongs to a relay that stopped and is taken over.
+ALTER TABLE outbox_event ADD COLUMN claimed_at timestamp(6);
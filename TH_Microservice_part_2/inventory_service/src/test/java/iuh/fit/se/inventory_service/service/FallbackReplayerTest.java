@@ -0,0 +1,83 @@
+package iuh.fit.se.inventory_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.FeignException;
+import feign.Request;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import iuh.fit.se.inventory_service.client.ProductClient;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FallbackReplayerTest {
+
+    private static final Request REQUEST = Request.create(Request.HttpMethod.PUT, "http://product-service/products/1/stock",
+            Map.of(), Request.Body.empty(), null);
+
+    private final InventoryService inventoryService = mock(InventoryService.class);
+    private final InventoryLaneExecutor laneExecutor = new InventoryLaneExecutor(2, 10);
+    private final FallbackReplayer replayer = new FallbackReplayer(inventoryService, laneExecutor,
+            mock(ProductClient.class), new ObjectMapper(), CircuitBreakerRegistry.ofDefaults(),
+            RateLimiterRegistry.ofDefaults());
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        laneExecutor.shutdown();
+    }
+
+    @Test
+    void manualUpdateIsAppliedOnItsProductsLane() {
+        AtomicReference<String> thread = new AtomicReference<>();
+        when(inventoryService.completePendingUpdate(3L, 5, "IN", "RESTOCK", 9L)).thenAnswer(invocation -> {
+            thread.set(Thread.currentThread().getName());
+            return null;
+        });
+
+        replayer.replay(List.of(record(0, update(3L, 9L))));
+
+        assertEquals("inventory-lane-" + laneExecutor.laneOf(3L), thread.get());
+    }
+
+    @Test
+    void updateTheProductServiceRejectsOnTheLaneIsDropped() {
+        when(inventoryService.completePendingUpdate(3L, 5, "IN", "RESTOCK", 9L))
+                .thenThrow(new FeignException.NotFound("Not Found", REQUEST, null, Map.of()));
+
+        replayer.replay(List.of(record(0, update(3L, 9L)), record(1, update(4L, 10L))));
+
+        verify(inventoryService).completePendingUpdate(4L, 5, "IN", "RESTOCK", 10L);
+    }
+
+    @Test
+    void otherFailuresOnTheLaneRedeliverFromTheFailedRecord() {
+        when(inventoryService.completePendingUpdate(4L, 5, "IN", "RESTOCK", 10L))
+                .thenThrow(new IllegalStateException("product-service down"));
+
+        BatchListenerFailedException failure = assertThrows(BatchListenerFailedException.class,
+                () -> replayer.replay(List.of(record(0, update(3L, 9L)), record(1, update(4L, 10L)))));
+
+        assertEquals(1, failure.getIndex());
+    }
+
+    private static String update(long productId, long referenceId) {
+        return "{\"productId\":" + productId + ",\"quantity\":5,\"type\":\"IN\",\"reason\":\"RESTOCK\",\"referenceId\":"
+                + referenceId + "}";
+    }
+
+    private static ConsumerRecord<String, byte[]> record(long offset, String value) {
+        return new ConsumerRecord<>("inventory-update-fallback", 0, offset, "key", value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,172 @@
+package iuh.fit.se.inventory_service.service;
+
+import iuh.fit.se.inventory_service.model.InVentoryItem;
+import iuh.fit.se.inventory_service.model.InventorySnapshot;
+import iuh.fit.se.inventory_service.model.InventoryTransaction;
+import iuh.fit.se.inventory_service.repository.InventoryItemRepository;
+import iuh.fit.se.inventory_service.repository.InventorySnapshotRepository;
+import iuh.fit.se.inventory_service.repository.InventoryTransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.inventory.ledger.snapshot-interval=3"
+})
+@Import(InventoryLedger.class)
+class InventoryLedgerTest {
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private InventoryItemRepository inventoryItemRepository;
+
+    @Autowired
+    private InventoryTransactionRepository transactionRepository;
+
+    @Autowired
+    private InventorySnapshotRepository snapshotRepository;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @Test
+    void entriesAreNumberedPerProduct() {
+        InVentoryItem first = item(1L, 0);
+        InVentoryItem second = item(2L, 0);
+
+        inventoryLedger.append(Map.of(1L, first, 2L, second),
+                List.of(entry(1L, "IN", 10), entry(2L, "IN", 5), entry(1L, "OUT", 3)));
+
+        assertEquals(List.of(1L, 2L), sequences(1L));
+        assertEquals(List.of(1L), sequences(2L));
+        assertEquals(2L, first.getLedgerSequence());
+        assertEquals(1L, second.getLedgerSequence());
+    }
+
+    @Test
+    void numberingContinuesFromTheItemsPosition() {
+        InVentoryItem item = item(1L, 0);
+        inventoryLedger.append(Map.of(1L, item), List.of(entry(1L, "IN", 10)));
+        inventoryLedger.append(Map.of(1L, item), List.of(entry(1L, "OUT", 4), entry(1L, "OUT", 1)));
+
+        assertEquals(List.of(1L, 2L, 3L), sequences(1L));
+    }
+
+    @Test
+    void snapshotIsTakenEveryIntervalAndTheBalanceAddsTheEntriesAfterIt() {
+        InVentoryItem item = item(1L, 0);
+        inventoryLedger.append(Map.of(1L, item), List.of(entry(1L, "IN", 10), entry(1L, "OUT", 2), entry(1L, "IN", 5)));
+        inventoryLedger.append(Map.of(1L, item), List.of(entry(1L, "OUT", 1), entry(1L, "OUT", 1), entry(1L, "IN", 4)));
+        inventoryLedger.append(Map.of(1L, item), List.of(entry(1L, "OUT", 3)));
+
+        List<InventorySnapshot> snapshots = snapshots(1L);
+        assertEquals(List.of(3L, 6L), snapshots.stream().map(InventorySnapshot::getLedgerSequence).toList());
+        assertEquals(13L, snapshots.get(0).getQuantity());
+        assertEquals(15L, snapshots.get(1).getQuantity());
+        assertEquals(12L, inventoryLedger.balance(1L));
+    }
+
+    @Test
+    void batchCrossingSeveralIntervalsKeepsOnlyTheLatestSnapshot() {
+        InVentoryItem item = item(1L, 0);
+        inventoryLedger.append(Map.of(1L, item), List.of(
+                entry(1L, "IN", 10), entry(1L, "OUT", 2), entry(1L, "IN", 5),
+                entry(1L, "OUT", 1), entry(1L, "OUT", 1), entry(1L, "IN", 4),
+                entry(1L, "OUT", 3)));
+
+        List<InventorySnapshot> snapshots = snapshots(1L);
+        assertEquals(List.of(6L), snapshots.stream().map(InventorySnapshot::getLedgerSequence).toList());
+        assertEquals(15L, snapshots.get(0).getQuantity());
+        assertEquals(12L, inventoryLedger.balance(1L));
+    }
+
+    @Test
+    void pendingEntriesAndUnnumberedEntriesAreAccountedFor() {
+        // Written before the ledger was numbered; counts before the first snapshot
+        transactionRepository.save(entry(1L, "IN", 20));
+        InVentoryItem item = item(1L, 20);
+        inventoryLedger.append(Map.of(1L, item), List.of(entry(1L, "OUT_PENDING", 5), entry(1L, "OUT", 2)));
+
+        assertEquals(18L, inventoryLedger.balance(1L));
+    }
+
+    @Test
+    void replayCorrectsADriftedQuantityAndPublishesIt() {
+        InVentoryItem item = item(1L, 0);
+        inventoryLedger.append(Map.of(1L, item), List.of(entry(1L, "IN", 10), entry(1L, "OUT", 4)));
+        item.setQuantity(9);
+        inventoryItemRepository.save(item);
+
+        InVentoryItem replayed = inventoryLedger.replay(1L).orElseThrow();
+
+        assertEquals(6, replayed.getQuantity());
+        verify(outboxService).publish(eq("inventory-updated"), eq("1"), any());
+    }
+
+    @Test
+    void repairTellsWhetherTheQuantityChanged() {
+        InVentoryItem item = item(1L, 0);
+        inventoryLedger.append(Map.of(1L, item), List.of(entry(1L, "IN", 10)));
+        item.setQuantity(10);
+        inventoryItemRepository.save(item);
+
+        assertFalse(inventoryLedger.repair(1L));
+        verify(outboxService, never()).publish(any(), any(), any());
+
+        item.setQuantity(7);
+        inventoryItemRepository.save(item);
+        assertTrue(inventoryLedger.repair(1L));
+        assertEquals(10, inventoryItemRepository.findByProductId(1L).orElseThrow().getQuantity());
+    }
+
+    private InVentoryItem item(Long productId, int quantity) {
+        InVentoryItem item = new InVentoryItem();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        item.setReservedQuantity(0);
+        item.setLastUpdated(LocalDateTime.now());
+        return inventoryItemRepository.save(item);
+    }
+
+    private static InventoryTransaction entry(Long productId, String type, int quantity) {
+        InventoryTransaction entry = new InventoryTransaction();
+        entry.setProductId(productId);
+        entry.setType(type);
+        entry.setQuantity(quantity);
+        entry.setReason("TEST");
+        entry.setTransactionDate(LocalDateTime.now());
+        return entry;
+    }
+
+    private List<InventorySnapshot> snapshots(Long productId) {
+        return snapshotRepository.findAll().stream()
+                .filter(snapshot -> snapshot.getProductId().equals(productId))
+                .sorted(Comparator.comparing(InventorySnapshot::getLedgerSequence))
+                .toList();
+    }
+
+    private List<Long> sequences(Long productId) {
+        return transactionRepository.findByProductId(productId).stream()
+                .map(InventoryTransaction::getLedgerSequence)
+                .sorted()
+                .toList();
+    }
+}
@@ -0,0 +1,112 @@
+package iuh.fit.se.inventory_service.service;
+
+import iuh.fit.se.inventory_service.model.InVentoryItem;
+import iuh.fit.se.inventory_service.model.InventoryTransaction;
+import iuh.fit.se.inventory_service.repository.InventoryItemRepository;
+import iuh.fit.se.inventory_service.repository.InventorySnapshotRepository;
+import iuh.fit.se.inventory_service.repository.InventoryTransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+// Repairs run on the lane threads, so the rows must be committed for them to see
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.inventory.lanes=2",
+        "app.inventory.ledger.reconcile-page-size=2"
+})
+@Import({InventoryReconciler.class, InventoryLedger.class, InventoryLaneExecutor.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InventoryReconcilerTest {
+
+    @Autowired
+    private InventoryReconciler inventoryReconciler;
+
+    @MockitoSpyBean
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private InventoryItemRepository inventoryItemRepository;
+
+    @Autowired
+    private InventoryTransactionRepository transactionRepository;
+
+    @Autowired
+    private InventorySnapshotRepository snapshotRepository;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @AfterEach
+    void tearDown() {
+        snapshotRepository.deleteAll();
+        transactionRepository.deleteAll();
+        inventoryItemRepository.deleteAll();
+    }
+
+    @Test
+    void onlyDriftedItemsAreRepairedAcrossPages() {
+        stock(1L, 10, 10);
+        stock(2L, 5, 8);
+        stock(3L, 7, 7);
+        stock(4L, 3, 0);
+        stock(5L, 1, 1);
+
+        assertEquals(2, inventoryReconciler.reconcile());
+
+        assertEquals(5, quantity(2L));
+        assertEquals(3, quantity(4L));
+        assertEquals(0, inventoryReconciler.reconcile());
+    }
+
+    @Test
+    void itemBroughtInLineBeforeItsRepairIsNotCounted() {
+        stock(1L, 10, 12);
+        doAnswer(invocation -> {
+            InVentoryItem item = inventoryItemRepository.findByProductId(1L).orElseThrow();
+            item.setQuantity(10);
+            inventoryItemRepository.save(item);
+            return invocation.callRealMethod();
+        }).when(inventoryLedger).repair(eq(1L));
+
+        assertEquals(0, inventoryReconciler.reconcile());
+        assertEquals(10, quantity(1L));
+    }
+
+    // An item whose ledger holds one IN entry of ledgerQuantity, with quantity as its projection
+    private void stock(Long productId, int ledgerQuantity, int quantity) {
+        InVentoryItem item = new InVentoryItem();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        item.setReservedQuantity(0);
+        item.setLedgerSequence(1L);
+        item.setLastUpdated(LocalDateTime.now());
+        inventoryItemRepository.save(item);
+
+        InventoryTransaction entry = new InventoryTransaction();
+        entry.setProductId(productId);
+        entry.setType("IN");
+        entry.setQuantity(ledgerQuantity);
+        entry.setReason("TEST");
+        entry.setLedgerSequence(1L);
+        entry.setTransactionDate(LocalDateTime.now());
+        transactionRepository.saveAll(List.of(entry));
+    }
+
+    private int quantity(Long productId) {
+        return inventoryItemRepository.findByProductId(productId).orElseThrow().getQuantity();
+    }
+}
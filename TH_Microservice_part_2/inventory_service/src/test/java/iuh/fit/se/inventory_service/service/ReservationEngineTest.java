@@ -0,0 +1,263 @@
+package iuh.fit.se.inventory_service.service;
+
+import iuh.fit.se.inventory_service.client.ProductClient;
+import iuh.fit.se.inventory_service.config.KafkaRetryConfig;
+import iuh.fit.se.inventory_service.event.OrderEvent;
+import iuh.fit.se.inventory_service.event.PaymentEvent;
+import iuh.fit.se.inventory_service.model.InVentoryItem;
+import iuh.fit.se.inventory_service.model.StockReservation;
+import iuh.fit.se.inventory_service.repository.InventoryItemRepository;
+import iuh.fit.se.inventory_service.repository.InventorySnapshotRepository;
+import iuh.fit.se.inventory_service.repository.InventoryTransactionRepository;
+import iuh.fit.se.inventory_service.repository.StockReservationRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Lanes apply the commands on their own threads, so the rows must be committed for them to see
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.inventory.lanes=2"
+})
+@Import({ReservationEngine.class, InventoryLedger.class, InventoryLaneExecutor.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReservationEngineTest {
+
+    private static final long PRODUCT = 1L;
+    private static final long ORDER = 100L;
+
+    @Autowired
+    private ReservationEngine reservationEngine;
+
+    @Autowired
+    private InventoryItemRepository inventoryItemRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private InventoryTransactionRepository transactionRepository;
+
+    @Autowired
+    private InventorySnapshotRepository snapshotRepository;
+
+    @MockitoBean
+    private ProductClient productClient;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @MockitoBean
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private long offset;
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll();
+        snapshotRepository.deleteAll();
+        transactionRepository.deleteAll();
+        inventoryItemRepository.deleteAll();
+    }
+
+    @Test
+    void holdReservesStockWithoutTakingItOffTheShelf() {
+        stock(10);
+
+        reservationEngine.handleOrderEvents(List.of(created(3)));
+
+        assertEquals("HELD", reservationStatus());
+        assertEquals(10, item().getQuantity());
+        assertEquals(3, item().getReservedQuantity());
+        verify(productClient).updateStock(PRODUCT, 3);
+    }
+
+    @Test
+    void holdBeyondTheAvailableStockIsRejected() {
+        stock(2);
+
+        reservationEngine.handleOrderEvents(List.of(created(3)));
+
+        assertEquals("REJECTED", reservationStatus());
+        assertEquals(0, item().getReservedQuantity());
+        verify(outboxService).publish(eq("inventory-reservation-failed"), eq(String.valueOf(ORDER)), any());
+        verify(productClient, never()).updateStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void redeliveredOrderCreatedHoldsOnce() {
+        stock(10);
+
+        reservationEngine.handleOrderEvents(List.of(created(3)));
+        reservationEngine.handleOrderEvents(List.of(created(3)));
+
+        assertEquals(3, item().getReservedQuantity());
+    }
+
+    @Test
+    void paymentTakesTheHeldStockOffTheShelf() {
+        stock(10);
+        reservationEngine.handleOrderEvents(List.of(created(3)));
+
+        reservationEngine.handleOrderEvents(List.of(paid()));
+
+        assertEquals("CONFIRMED", reservationStatus());
+        assertEquals(7, item().getQuantity());
+        assertEquals(0, item().getReservedQuantity());
+        assertEquals(1, transactionRepository.findByReferenceId(ORDER).size());
+    }
+
+    @Test
+    void orderCreatedAndPaidInOnePollIsConfirmed() {
+        stock(10);
+
+        reservationEngine.handleOrderEvents(List.of(created(3), paid()));
+
+        assertEquals("CONFIRMED", reservationStatus());
+        assertEquals(7, item().getQuantity());
+    }
+
+    @Test
+    void cancellationGivesTheHoldBack() {
+        stock(10);
+        reservationEngine.handleOrderEvents(List.of(created(3)));
+
+        reservationEngine.handleOrderEvents(List.of(cancelled(3)));
+
+        assertEquals("RELEASED", reservationStatus());
+        assertEquals(0, item().getReservedQuantity());
+        verify(productClient).updateStock(PRODUCT, -3);
+    }
+
+    @Test
+    void cancellationAfterPaymentPutsTheStockBackThroughTheLedger() {
+        stock(10);
+        reservationEngine.handleOrderEvents(List.of(created(3)));
+        reservationEngine.handleOrderEvents(List.of(paid()));
+
+        reservationEngine.handleOrderEvents(List.of(cancelled(3)));
+
+        assertEquals("RELEASED", reservationStatus());
+        assertEquals(10, item().getQuantity());
+        assertEquals(2, transactionRepository.findByReferenceId(ORDER).size());
+    }
+
+    @Test
+    void holdThatRanOutIsGivenBack() {
+        stock(10);
+        reservationEngine.handleOrderEvents(List.of(created(3)));
+        StockReservation reservation = reservation();
+        reservation.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        reservationRepository.save(reservation);
+
+        reservationEngine.expireReservations();
+
+        assertEquals("EXPIRED", reservationStatus());
+        assertEquals(0, item().getReservedQuantity());
+        verify(productClient).updateStock(PRODUCT, -3);
+    }
+
+    @Test
+    void cancellationThatOvertookItsOrderCreatedLeavesNothingHeld() {
+        stock(10);
+
+        reservationEngine.handleOrderEvents(List.of(cancelled(3)));
+        reservationEngine.handleOrderEvents(List.of(created(3)));
+
+        assertEquals("RELEASED", reservationStatus());
+        assertEquals(0, item().getReservedQuantity());
+        verify(productClient, never()).updateStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void paymentThatOvertookItsOrderCreatedIsMovedToTheRetryTopic() {
+        stock(10);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        reservationEngine.handleOrderEvents(List.of(paid()));
+
+        ArgumentCaptor<ProducerRecord<String, Object>> moved = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(moved.capture());
+        assertEquals(KafkaRetryConfig.ORDER_EVENTS_TOPIC, moved.getValue().topic());
+        assertInstanceOf(PaymentEvent.class, moved.getValue().value());
+    }
+
+    @Test
+    void retriedPaymentConfirmsOnceTheHoldIsThere() {
+        stock(10);
+        ConsumerRecord<String, Object> payment = paid();
+
+        assertThrows(RuntimeException.class, () -> reservationEngine.retryOrderEvent(payment));
+
+        reservationEngine.handleOrderEvents(List.of(created(3)));
+        reservationEngine.retryOrderEvent(payment);
+
+        assertEquals("CONFIRMED", reservationStatus());
+        assertEquals(7, item().getQuantity());
+    }
+
+    private void stock(int quantity) {
+        InVentoryItem item = new InVentoryItem();
+        item.setProductId(PRODUCT);
+        item.setQuantity(quantity);
+        item.setReservedQuantity(0);
+        item.setLocation("DEFAULT");
+        item.setLastUpdated(LocalDateTime.now());
+        item.setLedgerSequence(0L);
+        inventoryItemRepository.save(item);
+    }
+
+    private InVentoryItem item() {
+        return inventoryItemRepository.findByProductId(PRODUCT).orElseThrow();
+    }
+
+    private StockReservation reservation() {
+        return reservationRepository.findByOrderIdIn(List.of(ORDER)).get(0);
+    }
+
+    private String reservationStatus() {
+        return reservation().getStatus();
+    }
+
+    private ConsumerRecord<String, Object> created(int quantity) {
+        return orderRecord("order-created", "PENDING", quantity);
+    }
+
+    private ConsumerRecord<String, Object> cancelled(int quantity) {
+        return orderRecord("order-cancelled", "CANCELLED", quantity);
+    }
+
+    private ConsumerRecord<String, Object> orderRecord(String topic, String status, int quantity) {
+        return new ConsumerRecord<>(topic, 0, offset++, String.valueOf(ORDER), new OrderEvent(ORDER, 1L,
+                LocalDateTime.now(), status, quantity * 5.0, List.of(new OrderEvent.Item(PRODUCT, quantity, 5.0))));
+    }
+
+    private ConsumerRecord<String, Object> paid() {
+        return new ConsumerRecord<>("payment-completed", 0, offset++, String.valueOf(ORDER),
+                new PaymentEvent(1L, ORDER, "COMPLETED", 15.0));
+    }
+}
@@ -1,29 +1,61 @@
 package iuh.fit.se.payment_service.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import iuh.fit.se.payment_service.model.Payment;
+import iuh.fit.se.payment_service.service.PaymentIdempotencyStore;
 import iuh.fit.se.payment_service.service.PaymentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/payments")
 public class PaymentController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final PaymentService paymentService;
+    private final PaymentIdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService,
+                             PaymentIdempotencyStore idempotencyStore,
+                             ObjectMapper objectMapper) {
         this.paymentService = paymentService;
+        this.idempotencyStore = idempotencyStore;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public ResponseEntity<List<Payment>> getAllPayments() {
-        return ResponseEntity.ok(paymentService.getAllPayments());
+    public ResponseEntity<List<Payment>> getAllPayments(@RequestParam(required = false) Long after,
+                                                        @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<Payment> payments = paymentService.getPayments(after, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (payments.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(payments.get(payments.size() - 1).getId()));
+        }
+        return response.body(payments);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPayments() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> paymentService.writeAllPayments(
+                        objectMapper.writer().withRootValueSeparator("\n").writeValues(outputStream)));
     }
 
     @GetMapping("/{id}")
@@ -40,10 +72,39 @@ public class PaymentController {
     }
 
     @PostMapping
-    public CompletableFuture<ResponseEntity<Payment>> processPayment(@RequestBody Payment payment) {
-        return paymentService.processPayment(payment)
+    public CompletableFuture<ResponseEntity<Payment>> processPayment(
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody Payment payment) {
+        payment.setIdempotencyKey(idempotencyKey);
+        if (idempotencyKey == null) {
+            return toResponse(paymentService.processPayment(payment));
+        }
+
+        // A replayed key returns the stored payment without calling the order service or the gateway again;
+        // the same key with a different request body is refused
+        Optional<Payment> stored;
+        try {
+            stored = idempotencyStore.find(idempotencyKey, payment);
+        } catch (PaymentIdempotencyStore.KeyReusedException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.unprocessableEntity().build());
+        }
+        if (stored.isPresent()) {
+            return CompletableFuture.completedFuture(ResponseEntity.ok()
+                    .header(IDEMPOTENT_REPLAYED_HEADER, "true")
+                    .body(stored.get()));
+        }
+        return toResponse(idempotencyStore.runOnce(idempotencyKey, payment,
+                () -> paymentService.processPayment(payment)));
+    }
+
+    private CompletableFuture<ResponseEntity<Payment>> toResponse(CompletableFuture<Payment> payment) {
+        return payment
                 .thenApply(result -> ResponseEntity.status(HttpStatus.CREATED).body(result))
                 .exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    if (cause instanceof PaymentIdempotencyStore.KeyReusedException) {
+                        return ResponseEntity.unprocessableEntity().build();
+                    }
                     return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
                 });
     }
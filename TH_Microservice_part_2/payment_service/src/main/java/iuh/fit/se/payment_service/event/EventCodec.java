@@ -0,0 +1,202 @@
+package iuh.fit.se.payment_service.event;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary encoding of the events other services consume: a type byte, a version byte, then the fields
+ * in declaration order. Integers are varints, strings length-prefixed UTF-8 and timestamps epoch
+ * milliseconds in UTC. A new version only ever appends fields at the end, and readers ignore what follows the
+ * fields they know, so consumers can be upgraded after producers.
+ */
+public final class EventCodec {
+
+    static final byte ORDER = 1;
+    static final byte PAYMENT = 2;
+    private static final byte VERSION = 1;
+
+    private EventCodec() {
+    }
+
+    public static boolean supports(Object event) {
+        return event instanceof OrderEvent || event instanceof PaymentEvent;
+    }
+
+    public static byte[] encode(Object event) {
+        Writer out = new Writer();
+        if (event instanceof OrderEvent order) {
+            out.writeByte(ORDER);
+            out.writeByte(VERSION);
+            out.writeVarLong(order.orderId());
+            out.writeVarLong(order.customerId());
+            out.writeTimestamp(order.orderDate());
+            out.writeString(order.status());
+            out.writeDouble(order.totalAmount());
+            out.writeVarLong(order.items().size());
+            for (OrderEvent.Item item : order.items()) {
+                out.writeVarLong(item.productId());
+                out.writeVarLong(item.quantity());
+                out.writeDouble(item.price());
+            }
+        } else if (event instanceof PaymentEvent payment) {
+            out.writeByte(PAYMENT);
+            out.writeByte(VERSION);
+            out.writeVarLong(payment.paymentId());
+            out.writeVarLong(payment.orderId());
+            out.writeString(payment.status());
+            out.writeDouble(payment.amount());
+        } else {
+            throw new IllegalArgumentException("No compact encoding for " + event.getClass().getName());
+        }
+        return out.toByteArray();
+    }
+
+    public static Object decode(byte[] data) {
+        Reader in = new Reader(data);
+        byte type = in.readByte();
+        byte version = in.readByte();
+        if (version < 1) {
+            throw new IllegalArgumentException("Unsupported event version: " + version);
+        }
+        return switch (type) {
+            case ORDER -> readOrder(in);
+            case PAYMENT -> readPayment(in);
+            default -> throw new IllegalArgumentException("Unknown event type: " + type);
+        };
+    }
+
+    private static OrderEvent readOrder(Reader in) {
+        long orderId = in.readVarLong();
+        long customerId = in.readVarLong();
+        LocalDateTime orderDate = in.readTimestamp();
+        String status = in.readString();
+        double totalAmount = in.readDouble();
+        int count = Math.toIntExact(in.readVarLong());
+        List<OrderEvent.Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new OrderEvent.Item(in.readVarLong(), Math.toIntExact(in.readVarLong()), in.readDouble()));
+        }
+        return new OrderEvent(orderId, customerId, orderDate, status, totalAmount, items);
+    }
+
+    private static PaymentEvent readPayment(Reader in) {
+        return new PaymentEvent(in.readVarLong(), in.readVarLong(), in.readString(), in.readDouble());
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer = new byte[64];
+        private int position;
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        // Unsigned LEB128; ids and quantities are never negative, so they take one to three bytes
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeDouble(double value) {
+            ensure(8);
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (bits >>> shift);
+            }
+        }
+
+        // Length + 1, so that 0 stands for null
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        // Epoch milliseconds + 1, so that 0 stands for null
+        void writeTimestamp(LocalDateTime value) {
+            writeVarLong(value == null ? 0 : value.toInstant(ZoneOffset.UTC).toEpochMilli() + 1);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        byte readByte() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated event of " + data.length + " bytes");
+            }
+            return data[position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (readByte() & 0xFF);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        String readString() {
+            int length = Math.toIntExact(readVarLong()) - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (position + length > data.length) {
+                throw new IllegalArgumentException("Truncated event of " + data.length + " bytes");
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        LocalDateTime readTimestamp() {
+            long millis = readVarLong();
+            return millis == 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis - 1), ZoneOffset.UTC);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package iuh.fit.se.payment_service.event;
+
+import iuh.fit.se.payment_service.model.Payment;
+
+/**
+ * payment-completed / payment-failed as the consumers read them. Encoded with {@link EventCodec}.
+ */
+public record PaymentEvent(long paymentId, long orderId, String status, double amount) {
+
+    public static PaymentEvent of(Payment payment) {
+        return new PaymentEvent(payment.getId(), payment.getOrderId(), payment.getStatus(),
+                payment.getAmount() == null ? 0.0 : payment.getAmount());
+    }
+}
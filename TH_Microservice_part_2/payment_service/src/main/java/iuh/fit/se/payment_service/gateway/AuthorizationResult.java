@@ -0,0 +1,14 @@
+package iuh.fit.se.payment_service.gateway;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorizationResult {
+    private String transactionId;
+    private boolean approved;
+    private String declineReason;
+}
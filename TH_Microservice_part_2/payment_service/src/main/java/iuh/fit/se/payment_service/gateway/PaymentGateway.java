@@ -0,0 +1,18 @@
+package iuh.fit.se.payment_service.gateway;
+
+import iuh.fit.se.payment_service.model.Payment;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * External acquirer. Authorizations are submitted in batches; results are keyed by the payment's transactionId.
+ * The transactionId is also the idempotency key of both calls: a transaction sent again is answered with its
+ * first outcome, without charging or refunding twice.
+ */
+public interface PaymentGateway {
+
+    Map<String, AuthorizationResult> authorize(List<Payment> payments);
+
+    boolean refund(Payment payment);
+}
@@ -0,0 +1,166 @@
+package iuh.fit.se.payment_service.gateway;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.se.payment_service.model.Payment;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects authorizations until {@code batch-size} payments are waiting or the oldest has waited
+ * {@code max-wait}, then sends them to the {@link PaymentGateway} in one call. Each caller's future
+ * completes with the result for its own payment.
+ */
+@Component
+public class PaymentGatewayBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentGatewayBatcher.class);
+
+    private final PaymentGateway paymentGateway;
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<PendingAuthorization> queue;
+    private final ExecutorService submitters;
+    private final Thread dispatcher;
+    private final DistributionSummary batchSizes;
+    private final Timer queueWait;
+    private volatile boolean running = true;
+
+    @Autowired
+    public PaymentGatewayBatcher(PaymentGateway paymentGateway,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.payment.gateway.batch-size:50}") int batchSize,
+                                 @Value("${app.payment.gateway.max-wait:20ms}") Duration maxWait,
+                                 @Value("${app.payment.gateway.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${app.payment.gateway.concurrent-batches:4}") int concurrentBatches) {
+        this.paymentGateway = paymentGateway;
+        this.batchSize = batchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        // At most one batch waits per submitter; past that the dispatcher sends the batch itself, so
+        // authorizations back up in the bounded queue above instead of in the executor
+        this.submitters = new ThreadPoolExecutor(concurrentBatches, concurrentBatches, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(concurrentBatches), runnable -> {
+                    Thread thread = new Thread(runnable, "payment-gateway-submit");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Payment gateway batcher stopped");
+                    }
+                    task.run();
+                });
+        this.batchSizes = DistributionSummary.builder("payment.gateway.batch.size")
+                .description("Payments per gateway authorization call")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("payment.gateway.queue.wait")
+                .description("Time a payment waits for its batch to be sent")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.dispatcher = new Thread(this::dispatch, "payment-gateway-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<AuthorizationResult> authorize(Payment payment) {
+        PendingAuthorization pending = new PendingAuthorization(payment, System.nanoTime(), new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            pending.result().completeExceptionally(new RejectedExecutionException("Payment gateway queue is full"));
+        }
+        return pending.result();
+    }
+
+    private void dispatch() {
+        while (running) {
+            try {
+                PendingAuthorization first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingAuthorization> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long deadline = first.enqueuedAt() + maxWaitNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingAuthorization next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                try {
+                    submitters.execute(() -> submit(batch));
+                } catch (RejectedExecutionException e) {
+                    batch.forEach(pending -> pending.result().completeExceptionally(e));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void submit(List<PendingAuthorization> batch) {
+        long now = System.nanoTime();
+        List<Payment> payments = new ArrayList<>(batch.size());
+        for (PendingAuthorization pending : batch) {
+            queueWait.record(now - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+            payments.add(pending.payment());
+        }
+        batchSizes.record(batch.size());
+
+        try {
+            Map<String, AuthorizationResult> results = paymentGateway.authorize(payments);
+            for (PendingAuthorization pending : batch) {
+                AuthorizationResult result = results.get(pending.payment().getTransactionId());
+                if (result == null) {
+                    pending.result().completeExceptionally(new RuntimeException(
+                            "No gateway result for transaction: " + pending.payment().getTransactionId()));
+                } else {
+                    pending.result().complete(result);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Payment gateway batch of {} failed: {}", batch.size(), e.getMessage());
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        dispatcher.interrupt();
+        dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        submitters.shutdown();
+        submitters.awaitTermination(10, TimeUnit.SECONDS);
+        PendingAuthorization pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(new RejectedExecutionException("Payment gateway batcher stopped"));
+        }
+    }
+
+    private record PendingAuthorization(Payment payment, long enqueuedAt, CompletableFuture<AuthorizationResult> result) {
+    }
+}
@@ -0,0 +1,75 @@
+package iuh.fit.se.payment_service.gateway;
+
+import iuh.fit.se.payment_service.model.Payment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for a real acquirer: one simulated round trip per batch,
+ * 80% of authorizations and 90% of refunds succeed. Like a real acquirer it remembers
+ * the outcome of recent transactionIds and answers a repeated one with it.
+ */
+@Component
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    private static final int REMEMBERED_TRANSACTIONS = 100_000;
+
+    private final Duration latency;
+    private final Map<String, AuthorizationResult> authorizations = recentOutcomes();
+    private final Map<String, Boolean> refunds = recentOutcomes();
+
+    public SimulatedPaymentGateway(@Value("${app.payment.gateway.simulated-latency:0ms}") Duration latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public Map<String, AuthorizationResult> authorize(List<Payment> payments) {
+        roundTrip();
+        Map<String, AuthorizationResult> results = new HashMap<>();
+        for (Payment payment : payments) {
+            String transactionId = payment.getTransactionId();
+            results.put(transactionId, authorizations.computeIfAbsent(transactionId, id -> {
+                boolean approved = ThreadLocalRandom.current().nextDouble() > 0.2;
+                return new AuthorizationResult(id, approved, approved ? null : "DECLINED");
+            }));
+        }
+        return results;
+    }
+
+    @Override
+    public boolean refund(Payment payment) {
+        roundTrip();
+        // Only a refund that went through is remembered; a failed one may be tried again
+        return refunds.compute(payment.getTransactionId(), (id, refunded) ->
+                refunded != null || ThreadLocalRandom.current().nextDouble() > 0.1 ? Boolean.TRUE : null) != null;
+    }
+
+    private static <V> Map<String, V> recentOutcomes() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > REMEMBERED_TRANSACTIONS;
+            }
+        });
+    }
+
+    private void roundTrip() {
+        if (latency.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(latency.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while calling payment gateway", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package iuh.fit.se.payment_service.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Local copy of an order, kept up to date from the order-* events
+@Entity
+@Table(name = "order_snapshot")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSnapshot {
+    @Id
+    private Long id;
+
+    private Long customerId;
+    private LocalDateTime orderDate;
+    private String status;
+    private Double totalAmount;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,44 @@
+package iuh.fit.se.payment_service.repository;
+
+import iuh.fit.se.payment_service.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Unsent rows that are not claimed, or whose claim is older than claimedBefore. SKIP LOCKED lets several
+    // relay instances claim batches at the same time without picking the same row
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM OutboxEvent e WHERE e.sentAt IS NULL AND (e.claimedAt IS NULL OR e.claimedAt < :claimedBefore) " +
+            "ORDER BY e.id")
+    List<OutboxEvent> findClaimable(@Param("claimedBefore") LocalDateTime claimedBefore, Limit limit);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.claimedAt = :claimedAt WHERE e.id IN :ids")
+    int claim(@Param("ids") List<Long> ids, @Param("claimedAt") LocalDateTime claimedAt);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.claimedAt = NULL WHERE e.id IN :ids")
+    int release(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.sentAt = :sentAt WHERE e.id IN :ids")
+    int markSent(@Param("ids") List<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.sentAt < :cutoff")
+    int deleteSentBefore(@Param("cutoff") LocalDateTime cutoff);
+}
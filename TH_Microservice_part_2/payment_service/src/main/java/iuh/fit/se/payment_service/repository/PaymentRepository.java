@@ -1,14 +1,28 @@
 package iuh.fit.se.payment_service.repository;
 
 import iuh.fit.se.payment_service.model.Payment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByOrderId(Long orderId);
     Optional<Payment> findByTransactionId(String transactionId);
+    Optional<Payment> findByIdempotencyKey(String idempotencyKey);
+
+    List<Payment> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Payment> streamAllByOrderByIdAsc();
 }
@@ -0,0 +1,108 @@
+package iuh.fit.se.payment_service.service;
+
+import iuh.fit.se.payment_service.config.KafkaRetryConfig;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends the records parked on a dead-letter topic back to the start of their listener's retry chain,
+ * a poll at a time. The replay group commits a batch once the retry topic has acknowledged all of it,
+ * so a record is replayed once and a failed batch is picked up again by the next replay.
+ */
+@Component
+public class DeadLetterReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterReplayer.class);
+    private static final String GROUP_ID = "payment-dlt-replay";
+
+    private final ConsumerFactory<?, ?> consumerFactory;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final Duration pollTimeout;
+    private final Duration sendTimeout;
+
+    @Autowired
+    public DeadLetterReplayer(ConsumerFactory<?, ?> consumerFactory,
+                              KafkaTemplate<String, Object> kafkaTemplate,
+                              @Value("${app.kafka.dlt-replay.poll-timeout:5s}") Duration pollTimeout,
+                              @Value("${app.outbox.send-timeout:10s}") Duration sendTimeout) {
+        this.consumerFactory = consumerFactory;
+        this.kafkaTemplate = kafkaTemplate;
+        this.pollTimeout = pollTimeout;
+        this.sendTimeout = sendTimeout;
+    }
+
+    @SuppressWarnings("unchecked")
+    public int replay(String deadLetterTopic, int batchSize, int maxRecords) {
+        if (!KafkaRetryConfig.deadLetterTopics().contains(deadLetterTopic)) {
+            throw new IllegalArgumentException("Not a dead-letter topic: " + deadLetterTopic);
+        }
+        String retryTopic = deadLetterTopic.substring(0, deadLetterTopic.length() - KafkaRetryConfig.DLT_SUFFIX.length());
+
+        // The values go back exactly as they were parked, undecodable ones included
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        overrides.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchSize);
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        overrides.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+
+        int replayed = 0;
+        try (Consumer<String, byte[]> consumer =
+                     (Consumer<String, byte[]>) consumerFactory.createConsumer(GROUP_ID, null, null, overrides)) {
+            consumer.subscribe(List.of(deadLetterTopic));
+            while (replayed < maxRecords) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(pollTimeout);
+                if (records.isEmpty()) {
+                    break;
+                }
+
+                List<CompletableFuture<?>> sends = new ArrayList<>(records.count());
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    if (replayed + sends.size() == maxRecords) {
+                        break;
+                    }
+                    sends.add(kafkaTemplate.send(retryTopic, record.key(), record.value()));
+                    offsets.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                }
+                CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                        .get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                consumer.commitSync(offsets);
+                replayed += sends.size();
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            throw new RuntimeException("Failed to replay " + deadLetterTopic + " after " + replayed + " records", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Replay of " + deadLetterTopic + " interrupted", e);
+        }
+
+        logger.info("Replayed {} records from {} to {}", replayed, deadLetterTopic, retryTopic);
+        return replayed;
+    }
+}
@@ -0,0 +1,94 @@
+package iuh.fit.se.payment_service.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.FeignException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Re-drives the payments and refunds parked on payment-fallback and refund-fallback. Every operation goes
+ * through the orderService circuit breaker at the fallbackReplay rate. While the breaker refuses calls, or a
+ * call fails for any other reason, the rest of the poll is redelivered after app.fallback-replay.wait-interval.
+ * Only a record that cannot be parsed, or an operation the remote side rejects with a 4xx, is logged and skipped.
+ */
+@Component
+public class FallbackReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FallbackReplayer.class);
+
+    private final PaymentService paymentService;
+    private final ObjectMapper objectMapper;
+    private final CircuitBreaker circuitBreaker;
+    private final RateLimiter rateLimiter;
+
+    @Autowired
+    public FallbackReplayer(PaymentService paymentService,
+                            ObjectMapper objectMapper,
+                            CircuitBreakerRegistry circuitBreakerRegistry,
+                            RateLimiterRegistry rateLimiterRegistry) {
+        this.paymentService = paymentService;
+        this.objectMapper = objectMapper;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("orderService");
+        this.rateLimiter = rateLimiterRegistry.rateLimiter("fallbackReplay");
+    }
+
+    @KafkaListener(id = "payment-fallback-replay", topics = {"payment-fallback", "refund-fallback"},
+            groupId = "payment-fallback-replay", containerFactory = "fallbackKafkaListenerContainerFactory",
+            autoStartup = "${app.fallback-replay.enabled:true}")
+    public void replay(List<ConsumerRecord<String, byte[]>> records) {
+        int replayed = 0;
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            JsonNode payload;
+            try {
+                payload = objectMapper.readTree(record.value());
+            } catch (IOException | IllegalArgumentException e) {
+                // Malformed JSON or an empty value; no redelivery will make it readable
+                logger.error("Dropping unreadable {} record at offset {}", record.topic(), record.offset(), e);
+                continue;
+            }
+            try {
+                RateLimiter.waitForPermission(rateLimiter);
+                if (circuitBreaker.executeSupplier(() -> redrive(record.topic(), payload))) {
+                    replayed++;
+                }
+            } catch (RuntimeException e) {
+                if (!rejected(e)) {
+                    throw new BatchListenerFailedException("Could not replay " + record.topic() + " record at offset "
+                            + record.offset() + ": " + e.getMessage(), e, i);
+                }
+                logger.error("Dropping {} record at offset {}: {}", record.topic(), record.offset(), e.getMessage());
+            }
+        }
+        if (replayed > 0) {
+            logger.info("Re-drove {} of {} parked payments", replayed, records.size());
+        }
+    }
+
+    private boolean redrive(String topic, JsonNode payload) {
+        long paymentId = payload.path("id").asLong();
+        return "refund-fallback".equals(topic)
+                ? paymentService.completePendingRefund(paymentId).isPresent()
+                : paymentService.completePendingPayment(paymentId).isPresent();
+    }
+
+    // The remote side refused the operation itself, so sending it again gets the same answer;
+    // 408 and 429 only say it was busy
+    private static boolean rejected(RuntimeException e) {
+        return e instanceof FeignException feign && feign.status() >= 400 && feign.status() < 500
+                && feign.status() != 408 && feign.status() != 429;
+    }
+}
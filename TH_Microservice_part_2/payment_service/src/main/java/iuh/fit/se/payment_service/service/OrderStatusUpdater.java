@@ -0,0 +1,41 @@
+package iuh.fit.se.payment_service.service;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
+import io.github.resilience4j.retry.annotation.Retry;
+import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
+import iuh.fit.se.payment_service.client.OrderClient;
+import iuh.fit.se.payment_service.config.AsyncConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Order status updates behind the orderService circuit breaker, retry, rate limiter and time limiter. Setting a
+ * status is idempotent, so an attempt the time limiter gave up on may still land, and the update is retried on
+ * its own, never together with the gateway call that preceded it.
+ */
+@Service
+public class OrderStatusUpdater {
+
+    private final OrderClient orderClient;
+    private final Executor clientCallExecutor;
+
+    @Autowired
+    public OrderStatusUpdater(OrderClient orderClient,
+                              @Qualifier(AsyncConfig.CLIENT_CALL_EXECUTOR) Executor clientCallExecutor) {
+        this.orderClient = orderClient;
+        this.clientCallExecutor = clientCallExecutor;
+    }
+
+    @CircuitBreaker(name = "orderService")
+    @Retry(name = "orderService")
+    @RateLimiter(name = "orderService")
+    @TimeLimiter(name = "orderService")
+    public CompletableFuture<Void> updateOrderStatus(Long orderId, String status) {
+        return CompletableFuture.runAsync(() -> orderClient.updateOrderStatus(orderId, status), clientCallExecutor);
+    }
+}
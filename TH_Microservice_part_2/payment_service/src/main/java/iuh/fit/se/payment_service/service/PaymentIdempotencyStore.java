@@ -0,0 +1,128 @@
+package iuh.fit.se.payment_service.service;
+
+import iuh.fit.se.payment_service.model.Payment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Dedup store for {@code Idempotency-Key}. Recent results are answered from an in-memory LRU,
+ * older ones from the unique idempotency key index on the payment table. Duplicates that arrive
+ * while the first request is still running share its result. A key sent again with a different
+ * order, payment method or amount is refused with {@link KeyReusedException}.
+ */
+@Component
+public class PaymentIdempotencyStore {
+
+    private final PaymentService paymentService;
+    // Copies taken when the payment was stored; callers get a copy of their own, never the cached one
+    private final Map<String, Payment> recent;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PaymentIdempotencyStore(PaymentService paymentService,
+                                   @Value("${app.payment.idempotency.cache-size:10000}") int cacheSize) {
+        this.paymentService = paymentService;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Payment> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    public Optional<Payment> find(String idempotencyKey, Payment request) {
+        Payment payment = recent.get(idempotencyKey);
+        if (payment == null) {
+            payment = paymentService.getPaymentByIdempotencyKey(idempotencyKey).orElse(null);
+            if (payment == null) {
+                return Optional.empty();
+            }
+            payment = copyOf(payment);
+            recent.put(idempotencyKey, payment);
+        }
+        if (!RequestFingerprint.of(request).matches(RequestFingerprint.of(payment))) {
+            throw new KeyReusedException(idempotencyKey);
+        }
+        return Optional.of(copyOf(payment));
+    }
+
+    // Runs the action once per key at a time; failures are not remembered, so the client can retry
+    public CompletableFuture<Payment> runOnce(String idempotencyKey, Payment request,
+                                              Supplier<CompletableFuture<Payment>> action) {
+        RequestFingerprint fingerprint = RequestFingerprint.of(request);
+        CompletableFuture<Payment> result = new CompletableFuture<>();
+        InFlight entry = new InFlight(fingerprint, result);
+        InFlight running = inFlight.putIfAbsent(idempotencyKey, entry);
+        if (running != null) {
+            return fingerprint.matches(running.request())
+                    ? running.result().thenApply(PaymentIdempotencyStore::copyOf)
+                    : CompletableFuture.failedFuture(new KeyReusedException(idempotencyKey));
+        }
+        // The previous request with this key may have finished since the caller last looked
+        Payment finished = recent.get(idempotencyKey);
+        if (finished != null) {
+            inFlight.remove(idempotencyKey, entry);
+            return fingerprint.matches(RequestFingerprint.of(finished))
+                    ? CompletableFuture.completedFuture(copyOf(finished))
+                    : CompletableFuture.failedFuture(new KeyReusedException(idempotencyKey));
+        }
+
+        try {
+            action.get().whenComplete((payment, ex) -> {
+                if (ex == null) {
+                    recent.put(idempotencyKey, copyOf(payment));
+                }
+                inFlight.remove(idempotencyKey, entry);
+                if (ex == null) {
+                    result.complete(payment);
+                } else {
+                    result.completeExceptionally(ex);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(idempotencyKey, entry);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static Payment copyOf(Payment payment) {
+        return new Payment(payment.getId(), payment.getOrderId(), payment.getAmount(), payment.getPaymentMethod(),
+                payment.getStatus(), payment.getTransactionId(), payment.getPaymentDate(), payment.getIdempotencyKey());
+    }
+
+    private record InFlight(RequestFingerprint request, CompletableFuture<Payment> result) {
+    }
+
+    // What a retry has to repeat for its key to be honoured. The amount is set from the order total,
+    // so a request that leaves it out matches any amount
+    private record RequestFingerprint(long orderId, String paymentMethod, Double amount) {
+
+        static RequestFingerprint of(Payment payment) {
+            return new RequestFingerprint(payment.getOrderId(), payment.getPaymentMethod(), payment.getAmount());
+        }
+
+        boolean matches(RequestFingerprint other) {
+            return orderId == other.orderId
+                    && Objects.equals(paymentMethod, other.paymentMethod)
+                    && (amount == null || other.amount == null || amount.equals(other.amount));
+        }
+    }
+
+    public static class KeyReusedException extends RuntimeException {
+
+        public KeyReusedException(String idempotencyKey) {
+            super("Idempotency key " + idempotencyKey + " was already used for a different payment request");
+        }
+    }
+}
@@ -1,46 +1,94 @@
 package iuh.fit.se.payment_service.service;
 
-
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
-import io.github.resilience4j.retry.annotation.Retry;
-import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
-import iuh.fit.se.payment_service.client.OrderClient;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import iuh.fit.se.payment_service.client.OrderDto;
+import iuh.fit.se.payment_service.config.AsyncConfig;
+import iuh.fit.se.payment_service.event.PaymentEvent;
+import iuh.fit.se.payment_service.gateway.AuthorizationResult;
+import iuh.fit.se.payment_service.gateway.PaymentGateway;
+import iuh.fit.se.payment_service.gateway.PaymentGatewayBatcher;
 import iuh.fit.se.payment_service.model.Payment;
 import iuh.fit.se.payment_service.repository.PaymentRepository;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
 public class PaymentService {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
     private final PaymentRepository paymentRepository;
-    private final OrderClient orderClient;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OrderStatusUpdater orderStatusUpdater;
+    private final OrderProjection orderProjection;
+    private final OutboxService outboxService;
+    private final PaymentGatewayBatcher gatewayBatcher;
+    private final PaymentGateway paymentGateway;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor clientCallExecutor;
+    private final EntityManager entityManager;
+    private final Duration authorizeTimeout;
 
     @Autowired
     public PaymentService(PaymentRepository paymentRepository,
-                          OrderClient orderClient,
-                          KafkaTemplate<String, Object> kafkaTemplate) {
+                          OrderStatusUpdater orderStatusUpdater,
+                          OrderProjection orderProjection,
+                          OutboxService outboxService,
+                          PaymentGatewayBatcher gatewayBatcher,
+                          PaymentGateway paymentGateway,
+                          TransactionTemplate transactionTemplate,
+                          @Qualifier(AsyncConfig.CLIENT_CALL_EXECUTOR) Executor clientCallExecutor,
+                          EntityManager entityManager,
+                          @Value("${app.payment.gateway.authorize-timeout:1500ms}") Duration authorizeTimeout) {
         this.paymentRepository = paymentRepository;
-        this.orderClient = orderClient;
-        this.kafkaTemplate = kafkaTemplate;
+        this.orderStatusUpdater = orderStatusUpdater;
+        this.orderProjection = orderProjection;
+        this.outboxService = outboxService;
+        this.gatewayBatcher = gatewayBatcher;
+        this.paymentGateway = paymentGateway;
+        this.transactionTemplate = transactionTemplate;
+        this.clientCallExecutor = clientCallExecutor;
+        this.entityManager = entityManager;
+        this.authorizeTimeout = authorizeTimeout;
+    }
+
+    public List<Payment> getPayments(Long afterId, int limit) {
+        return paymentRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId, Limit.of(limit));
     }
 
-    public List<Payment> getAllPayments() {
-        return paymentRepository.findAll();
+    // NDJSON export of the payment history for reconciliation; each payment is detached once written
+    @Transactional(readOnly = true)
+    public void writeAllPayments(SequenceWriter lines) throws IOException {
+        try (lines; Stream<Payment> payments = paymentRepository.streamAllByOrderByIdAsc()) {
+            for (Iterator<Payment> iterator = payments.iterator(); iterator.hasNext(); ) {
+                Payment payment = iterator.next();
+                lines.write(payment);
+                entityManager.detach(payment);
+            }
+        }
     }
 
     public Optional<Payment> getPaymentById(Long id) {
@@ -51,121 +99,192 @@ public class PaymentService {
         return paymentRepository.findByOrderId(orderId);
     }
 
-    @CircuitBreaker(name = "orderService", fallbackMethod = "processPaymentFallback")
-    @Retry(name = "orderService", fallbackMethod = "processPaymentFallback")
-    @RateLimiter(name = "orderService")
-    @TimeLimiter(name = "orderService")
-    @Transactional
+    public Optional<Payment> getPaymentByIdempotencyKey(String idempotencyKey) {
+        return paymentRepository.findByIdempotencyKey(idempotencyKey);
+    }
+
+    // Only the order status update is retried (OrderStatusUpdater): the gateway sees one authorization per
+    // payment, under a transactionId fixed before the first attempt. A payment that cannot finish is parked
     public CompletableFuture<Payment> processPayment(Payment payment) {
-        return CompletableFuture.supplyAsync(() -> {
-            // Validate order exists and get amount
-            var orderResponse = orderClient.getOrderById(payment.getOrderId());
-            if (!orderResponse.getStatusCode().is2xxSuccessful()) {
-                throw new RuntimeException("Order not found: " + payment.getOrderId());
-            }
+        if (payment.getTransactionId() == null) {
+            payment.setTransactionId(transactionIdFor(payment));
+        }
+        return CompletableFuture.supplyAsync(() -> authorize(payment), clientCallExecutor)
+                .thenCompose(this::confirmToOrder)
+                .exceptionallyAsync(ex -> processPaymentFallback(payment, ex), clientCallExecutor);
+    }
 
-            OrderDto order = orderResponse.getBody();
+    // Re-drives a payment parked by processPaymentFallback. An AUTHORIZED one only repeats the order status
+    // update; a PENDING_CONFIRMATION one never got its gateway result stored and is authorized again under its
+    // original transactionId, which the gateway answers with the first result. Anything else is left as it is
+    public Optional<Payment> completePendingPayment(Long paymentId) {
+        return paymentRepository.findById(paymentId)
+                .filter(payment -> "PENDING_CONFIRMATION".equals(payment.getStatus())
+                        || "AUTHORIZED".equals(payment.getStatus()))
+                .map(payment -> await(confirmToOrder(
+                        "AUTHORIZED".equals(payment.getStatus()) ? payment : authorize(payment))));
+    }
 
-            // Set payment details
-            payment.setAmount(order.getTotalAmount());
-            payment.setPaymentDate(LocalDateTime.now());
-            payment.setStatus("PENDING");
-            payment.setTransactionId(UUID.randomUUID().toString());
+    // The gateway's idempotency key. Requests sharing an Idempotency-Key share it too, even on another instance
+    private static String transactionIdFor(Payment payment) {
+        return payment.getIdempotencyKey() == null
+                ? UUID.randomUUID().toString()
+                : UUID.nameUUIDFromBytes(("payment:" + payment.getIdempotencyKey()).getBytes(StandardCharsets.UTF_8))
+                        .toString();
+    }
 
-            // Simulate payment processing with external gateway
-            boolean paymentSuccessful = processWithPaymentGateway(payment);
+    // The gateway result is stored in its own transaction before the order service is called: an approved
+    // payment as AUTHORIZED for confirmToOrder, a declined one, or one for a closed order, as FAILED with its event
+    private Payment authorize(Payment payment) {
+        // Validate order exists and get amount; served from the local projection when the order events have arrived
+        OrderDto order = orderProjection.getOrder(payment.getOrderId());
 
-            if (paymentSuccessful) {
-                payment.setStatus("COMPLETED");
+        // Set payment details
+        payment.setAmount(order.getTotalAmount());
+        payment.setPaymentDate(LocalDateTime.now());
+        payment.setStatus("PENDING");
+
+        // An order whose stock inventory-service could not hold is rejected by order-service; it is never charged
+        if ("REJECTED".equals(order.getStatus()) || "CANCELLED".equals(order.getStatus())) {
+            logger.warn("Order {} is {}, payment refused", payment.getOrderId(), order.getStatus());
+            payment.setStatus("FAILED");
+            return saveAndPublish(payment, "payment-failed", PaymentEvent::of);
+        }
+
+        // Authorize with the external gateway; the call is batched with other pending payments
+        AuthorizationResult authorization = gatewayBatcher.authorize(payment)
+                .orTimeout(authorizeTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .join();
+        if (!authorization.isApproved()) {
+            payment.setStatus("FAILED");
+            return saveAndPublish(payment, "payment-failed", PaymentEvent::of);
+        }
+        payment.setStatus("AUTHORIZED");
+        return save(payment);
+    }
 
-                // Update order status
-                orderClient.updateOrderStatus(payment.getOrderId(), "PAID");
+    private CompletableFuture<Payment> confirmToOrder(Payment payment) {
+        if (!"AUTHORIZED".equals(payment.getStatus())) {
+            return CompletableFuture.completedFuture(payment);
+        }
+        return orderStatusUpdater.updateOrderStatus(payment.getOrderId(), "PAID")
+                .thenApplyAsync(updated -> {
+                    payment.setStatus("COMPLETED");
+                    return saveAndPublish(payment, "payment-completed", PaymentEvent::of);
+                }, clientCallExecutor);
+    }
 
-                // Send payment completed event
-                kafkaTemplate.send("payment-completed", payment);
-            } else {
-                payment.setStatus("FAILED");
+    public Payment processPaymentFallback(Payment payment, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        logger.error("Fallback executed for processPayment. Error: {}", cause.getMessage());
 
-                // Send payment failed event
-                kafkaTemplate.send("payment-failed", payment);
-            }
+        // Create a record of the attempted payment; it keeps its transactionId for the replay, and an
+        // AUTHORIZED one stays AUTHORIZED, so the replay only repeats the order status update
+        if (!"AUTHORIZED".equals(payment.getStatus())) {
+            payment.setPaymentDate(LocalDateTime.now());
+            payment.setStatus("PENDING_CONFIRMATION");
+        }
 
-            return paymentRepository.save(payment);
-        });
+        // Send to a special topic for manual processing
+        return saveAndPublish(payment, "payment-fallback", Function.identity());
     }
 
-    public CompletableFuture<Payment> processPaymentFallback(Payment payment, Exception ex) {
-        logger.error("Fallback executed for processPayment. Error: {}", ex.getMessage());
-
-        // Create a record of the attempted payment
-        payment.setPaymentDate(LocalDateTime.now());
-        payment.setStatus("PENDING_CONFIRMATION");
-        payment.setTransactionId(UUID.randomUUID().toString());
-
-        Payment savedPayment = paymentRepository.save(payment);
+    // Rethrows what the call failed with, so the fallback replayer can tell a rejected call from a transient one
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 
-        // Send to a special topic for manual processing
-        kafkaTemplate.send("payment-fallback", savedPayment);
+    // Runs off the request thread, so the payment row and its event share an explicit transaction.
+    // If another instance already stored a payment under the same idempotency key, that one is returned.
+    private Payment saveAndPublish(Payment payment, String topic, Function<? super Payment, ?> toEvent) {
+        return save(payment, savedPayment ->
+                outboxService.publish(topic, String.valueOf(savedPayment.getOrderId()), toEvent.apply(savedPayment)));
+    }
 
-        return CompletableFuture.completedFuture(savedPayment);
+    private Payment save(Payment payment) {
+        return save(payment, savedPayment -> {
+        });
     }
 
-    private boolean processWithPaymentGateway(Payment payment) {
-        // In a real application, this would integrate with a payment gateway
-        // For this example, we'll simulate a successful payment most of the time
-        return Math.random() > 0.2; // 80% success rate
+    private Payment save(Payment payment, Consumer<Payment> inTransaction) {
+        try {
+            return transactionTemplate.execute(status -> {
+                Payment savedPayment = paymentRepository.save(payment);
+                inTransaction.accept(savedPayment);
+                return savedPayment;
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (payment.getIdempotencyKey() == null) {
+                throw e;
+            }
+            return paymentRepository.findByIdempotencyKey(payment.getIdempotencyKey()).orElseThrow(() -> e);
+        }
     }
 
-    @CircuitBreaker(name = "orderService", fallbackMethod = "refundPaymentFallback")
-    @Retry(name = "orderService", fallbackMethod = "refundPaymentFallback")
-    @Transactional
+    // The gateway refund is not retried here; the order status update retries on its own (OrderStatusUpdater).
+    // A refund that cannot finish is parked on refund-fallback
     public Payment refundPayment(Long paymentId) {
         return paymentRepository.findById(paymentId)
                 .map(payment -> {
-                    if ("COMPLETED".equals(payment.getStatus())) {
-                        // Process refund with payment gateway
-                        boolean refundSuccessful = processRefundWithPaymentGateway(payment);
-
-                        if (refundSuccessful) {
-                            payment.setStatus("REFUNDED");
-
-                            // Update order status
-                            orderClient.updateOrderStatus(payment.getOrderId(), "REFUNDED");
-
-                            // Send payment refunded event
-                            kafkaTemplate.send("payment-refunded", payment);
-                        } else {
-                            // Send refund failed event
-                            kafkaTemplate.send("refund-failed", payment);
-                        }
-
-                        return paymentRepository.save(payment);
-                    } else {
+                    if (!"COMPLETED".equals(payment.getStatus())) {
                         throw new RuntimeException("Payment cannot be refunded. Current status: " + payment.getStatus());
                     }
+                    try {
+                        return refund(payment);
+                    } catch (RuntimeException e) {
+                        return refundPaymentFallback(payment, e);
+                    }
                 })
                 .orElseThrow(() -> new RuntimeException("Payment not found: " + paymentId));
     }
 
-    public Payment refundPaymentFallback(Long paymentId, Exception ex) {
-        logger.error("Fallback executed for refundPayment. PaymentId: {}, Error: {}", paymentId, ex.getMessage());
-
+    // Re-drives a refund parked by refundPaymentFallback. A REFUNDED one only repeats the order status update;
+    // a REFUND_PENDING one goes back to the gateway under its transactionId. Anything else is left as it is
+    public Optional<Payment> completePendingRefund(Long paymentId) {
         return paymentRepository.findById(paymentId)
-                .map(payment -> {
-                    payment.setStatus("REFUND_PENDING");
-                    Payment savedPayment = paymentRepository.save(payment);
+                .filter(payment -> "REFUND_PENDING".equals(payment.getStatus())
+                        || "REFUNDED".equals(payment.getStatus()))
+                .map(payment -> "REFUNDED".equals(payment.getStatus()) ? markOrderRefunded(payment) : refund(payment));
+    }
 
-                    // Send to a special topic for manual processing
-                    kafkaTemplate.send("refund-fallback", savedPayment);
+    private Payment refund(Payment payment) {
+        // Process refund with payment gateway; the outcome is stored before the order service is called
+        boolean refundSuccessful = paymentGateway.refund(payment);
 
-                    return savedPayment;
-                })
-                .orElseThrow(() -> new RuntimeException("Payment not found: " + paymentId));
+        if (!refundSuccessful) {
+            // A refund re-driven from REFUND_PENDING goes back to COMPLETED
+            payment.setStatus("COMPLETED");
+
+            // Send refund failed event
+            return saveAndPublish(payment, "refund-failed", Function.identity());
+        }
+
+        // Send payment refunded event
+        payment.setStatus("REFUNDED");
+        return markOrderRefunded(saveAndPublish(payment, "payment-refunded", Function.identity()));
     }
 
-    private boolean processRefundWithPaymentGateway(Payment payment) {
-        // In a real application, this would integrate with a payment gateway
-        // For this example, we'll simulate a successful refund most of the time
-        return Math.random() > 0.1; // 90% success rate
+    private Payment markOrderRefunded(Payment payment) {
+        await(orderStatusUpdater.updateOrderStatus(payment.getOrderId(), "REFUNDED"));
+        return payment;
+    }
+
+    public Payment refundPaymentFallback(Payment payment, Exception ex) {
+        logger.error("Fallback executed for refundPayment. PaymentId: {}, Error: {}", payment.getId(), ex.getMessage());
+
+        // A refund the gateway already made stays REFUNDED, so the replay only repeats the order status update
+        if (!"REFUNDED".equals(payment.getStatus())) {
+            payment.setStatus("REFUND_PENDING");
+        }
+
+        // Send to a special topic for manual processing
+        return saveAndPublish(payment, "refund-fallback", Function.identity());
     }
 }
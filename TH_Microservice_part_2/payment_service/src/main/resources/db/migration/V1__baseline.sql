@@ -0,0 +1,38 @@
+-- Baseline schema. Every statement is idempotent, so it also applies to a schema
+-- that ddl-auto created before Flyway took over (baseline-version 0).
+
+CREATE SEQUENCE IF NOT EXISTS payment_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS payment (
+    id              bigint PRIMARY KEY,
+    order_id        bigint NOT NULL,
+    amount          float(53),
+    payment_method  varchar(255),
+    status          varchar(255),
+    transaction_id  varchar(255),
+    payment_date    timestamp(6),
+    idempotency_key varchar(255)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_payment_idempotency_key ON payment (idempotency_key);
+
+CREATE TABLE IF NOT EXISTS order_snapshot (
+    id           bigint PRIMARY KEY,
+    customer_id  bigint,
+    order_date   timestamp(6),
+    status       varchar(255),
+    total_amount float(53),
+    updated_at   timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id          bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    topic       varchar(255),
+    message_key varchar(255),
+    payload     text,
+    created_at  timestamp(6),
+    sent_at     timestamp(6)
+);
+CREATE INDEX IF NOT EXISTS idx_outbox_event_sent_at ON outbox_event (sent_at, id);
+
+-- Rows written with the former identity ids may be ahead of the sequences
+SELECT setval('payment_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM payment) + 50, (SELECT last_value FROM payment_seq)));
@@ -0,0 +1,3 @@
+-- Outbox payloads are stored as the exact Kafka record value: EventCodec bytes or UTF-8 JSON.
+-- Rows still waiting to be relayed keep their JSON text as its UTF-8 bytes.
+ALTER TABLE outbox_event ALTER COLUMN payload TYPE bytea USING convert_to(payload, 'UTF8');
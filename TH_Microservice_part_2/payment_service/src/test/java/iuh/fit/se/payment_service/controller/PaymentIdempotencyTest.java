@@ -0,0 +1,122 @@
+package iuh.fit.se.payment_service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.payment_service.model.Payment;
+import iuh.fit.se.payment_service.service.PaymentIdempotencyStore;
+import iuh.fit.se.payment_service.service.PaymentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PaymentIdempotencyTest {
+
+    private final PaymentService paymentService = mock(PaymentService.class);
+    private final PaymentController controller = new PaymentController(paymentService,
+            new PaymentIdempotencyStore(paymentService, 100), new ObjectMapper());
+
+    @Test
+    void duplicateRequestReplaysTheStoredPayment() {
+        when(paymentService.processPayment(any())).thenAnswer(invocation -> completed(invocation.getArgument(0)));
+
+        ResponseEntity<Payment> first = controller.processPayment("key-1", request(1L, "CARD", null)).join();
+        ResponseEntity<Payment> replay = controller.processPayment("key-1", request(1L, "CARD", null)).join();
+
+        assertEquals(HttpStatus.CREATED, first.getStatusCode());
+        assertEquals(HttpStatus.OK, replay.getStatusCode());
+        assertEquals("true", replay.getHeaders().getFirst("Idempotent-Replayed"));
+        assertEquals(first.getBody().getTransactionId(), replay.getBody().getTransactionId());
+        verify(paymentService, times(1)).processPayment(any());
+    }
+
+    @Test
+    void replayIsACopyThatCallersCannotChangeForOthers() {
+        when(paymentService.processPayment(any())).thenAnswer(invocation -> completed(invocation.getArgument(0)));
+        controller.processPayment("key-1", request(1L, "CARD", null)).join();
+
+        Payment replay = controller.processPayment("key-1", request(1L, "CARD", null)).join().getBody();
+        replay.setStatus("REFUNDED");
+
+        Payment again = controller.processPayment("key-1", request(1L, "CARD", null)).join().getBody();
+        assertNotSame(replay, again);
+        assertEquals("COMPLETED", again.getStatus());
+    }
+
+    @Test
+    void concurrentDuplicateSharesTheRunningRequest() {
+        CompletableFuture<Payment> running = new CompletableFuture<>();
+        when(paymentService.processPayment(any())).thenReturn(running);
+
+        CompletableFuture<ResponseEntity<Payment>> first = controller.processPayment("key-1", request(1L, "CARD", null));
+        CompletableFuture<ResponseEntity<Payment>> second = controller.processPayment("key-1", request(1L, "CARD", null));
+        assertFalse(second.isDone());
+
+        Payment payment = request(1L, "CARD", 50.0);
+        payment.setStatus("COMPLETED");
+        payment.setTransactionId("tx-1");
+        running.complete(payment);
+
+        assertEquals("tx-1", first.join().getBody().getTransactionId());
+        assertEquals("tx-1", second.join().getBody().getTransactionId());
+        verify(paymentService, times(1)).processPayment(any());
+    }
+
+    @Test
+    void keyReusedWithADifferentBodyIsRefused() {
+        when(paymentService.processPayment(any())).thenAnswer(invocation -> completed(invocation.getArgument(0)));
+        controller.processPayment("key-1", request(1L, "CARD", null)).join();
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY,
+                controller.processPayment("key-1", request(2L, "CARD", null)).join().getStatusCode());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY,
+                controller.processPayment("key-1", request(1L, "CARD", 99.0)).join().getStatusCode());
+        verify(paymentService, times(1)).processPayment(any());
+    }
+
+    @Test
+    void keyReusedWhileTheFirstRequestIsRunningIsRefused() {
+        when(paymentService.processPayment(any())).thenReturn(new CompletableFuture<>());
+        controller.processPayment("key-1", request(1L, "CARD", null));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY,
+                controller.processPayment("key-1", request(1L, "PAYPAL", null)).join().getStatusCode());
+    }
+
+    @Test
+    void keyStoredBeforeARestartIsCheckedAgainstTheStoredPayment() {
+        Payment stored = request(1L, "CARD", 50.0);
+        stored.setStatus("COMPLETED");
+        when(paymentService.getPaymentByIdempotencyKey("key-1")).thenReturn(Optional.of(stored));
+
+        assertEquals(HttpStatus.OK, controller.processPayment("key-1", request(1L, "CARD", 50.0)).join().getStatusCode());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY,
+                controller.processPayment("key-1", request(1L, "CARD", 75.0)).join().getStatusCode());
+    }
+
+    private static Payment request(long orderId, String paymentMethod, Double amount) {
+        Payment payment = new Payment();
+        payment.setOrderId(orderId);
+        payment.setPaymentMethod(paymentMethod);
+        payment.setAmount(amount);
+        return payment;
+    }
+
+    // Stands in for the service: the amount comes from the order total
+    private static CompletableFuture<Payment> completed(Payment payment) {
+        payment.setAmount(50.0);
+        payment.setStatus("COMPLETED");
+        payment.setTransactionId("tx-" + payment.getOrderId());
+        return CompletableFuture.completedFuture(payment);
+    }
+}
@@ -0,0 +1,168 @@
+package iuh.fit.se.payment_service.gateway;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iuh.fit.se.payment_service.model.Payment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaymentGatewayBatcherTest {
+
+    private final RecordingGateway gateway = new RecordingGateway();
+    private PaymentGatewayBatcher batcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        gateway.release.countDown();
+        batcher.shutdown();
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForMaxWait() {
+        batcher = new PaymentGatewayBatcher(gateway, new SimpleMeterRegistry(), 5, Duration.ofMinutes(1), 100, 1);
+
+        List<CompletableFuture<AuthorizationResult>> results = authorize(5);
+
+        results.forEach(result -> assertTrue(result.orTimeout(5, TimeUnit.SECONDS).join().isApproved()));
+        assertEquals(List.of(5), gateway.batchSizes);
+    }
+
+    @Test
+    void partialBatchIsSentAfterMaxWait() {
+        batcher = new PaymentGatewayBatcher(gateway, new SimpleMeterRegistry(), 50, Duration.ofMillis(20), 100, 1);
+
+        List<CompletableFuture<AuthorizationResult>> results = authorize(3);
+
+        results.forEach(result -> result.orTimeout(5, TimeUnit.SECONDS).join());
+        assertEquals(List.of(3), gateway.batchSizes);
+    }
+
+    @Test
+    void eachCallerGetsTheResultForItsOwnPayment() {
+        gateway.approve = payment -> !payment.getTransactionId().equals("tx-1");
+        batcher = new PaymentGatewayBatcher(gateway, new SimpleMeterRegistry(), 3, Duration.ofMinutes(1), 100, 1);
+
+        List<CompletableFuture<AuthorizationResult>> results = authorize(3);
+
+        assertTrue(results.get(0).join().isApproved());
+        assertEquals("tx-1", results.get(1).join().getTransactionId());
+        assertFalse(results.get(1).join().isApproved());
+        assertTrue(results.get(2).join().isApproved());
+    }
+
+    @Test
+    void gatewayFailureFailsTheWholeBatch() {
+        gateway.failure = new IllegalStateException("acquirer down");
+        batcher = new PaymentGatewayBatcher(gateway, new SimpleMeterRegistry(), 2, Duration.ofMinutes(1), 100, 1);
+
+        List<CompletableFuture<AuthorizationResult>> results = authorize(2);
+
+        for (CompletableFuture<AuthorizationResult> result : results) {
+            CompletionException e = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void fullQueueRejectsRightAway() throws InterruptedException {
+        gateway.release = new CountDownLatch(1);
+        batcher = new PaymentGatewayBatcher(gateway, new SimpleMeterRegistry(), 1, Duration.ZERO, 1, 1);
+        authorize(1);
+        gateway.entered.await(5, TimeUnit.SECONDS);
+
+        // One batch is at the gateway, one waits for the submitter, one is sent by the blocked dispatcher,
+        // one fills the queue; anything after that cannot be queued
+        List<CompletableFuture<AuthorizationResult>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(batcher.authorize(payment("tx-more-" + i)));
+        }
+
+        CompletionException e = assertThrows(CompletionException.class, results.get(9)::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    @Test
+    void authorizationsAfterShutdownAreRejected() throws InterruptedException {
+        batcher = new PaymentGatewayBatcher(gateway, new SimpleMeterRegistry(), 5, Duration.ofMillis(20), 100, 1);
+        batcher.shutdown();
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> batcher.authorize(payment("tx-late")).join());
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    @Test
+    void slowGatewayPushesBackWithoutLosingAuthorizations() {
+        gateway.delayMillis = 5;
+        batcher = new PaymentGatewayBatcher(gateway, new SimpleMeterRegistry(), 2, Duration.ZERO, 1000, 1);
+
+        List<CompletableFuture<AuthorizationResult>> results = authorize(200);
+
+        results.forEach(result -> assertTrue(result.orTimeout(10, TimeUnit.SECONDS).join().isApproved()));
+        assertEquals(200, gateway.batchSizes.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    private List<CompletableFuture<AuthorizationResult>> authorize(int count) {
+        List<CompletableFuture<AuthorizationResult>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(batcher.authorize(payment("tx-" + i)));
+        }
+        return results;
+    }
+
+    private static Payment payment(String transactionId) {
+        Payment payment = new Payment();
+        payment.setTransactionId(transactionId);
+        return payment;
+    }
+
+    private static class RecordingGateway implements PaymentGateway {
+
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private volatile CountDownLatch release = new CountDownLatch(0);
+        private volatile Function<Payment, Boolean> approve = payment -> true;
+        private volatile RuntimeException failure;
+        private volatile long delayMillis;
+
+        @Override
+        public Map<String, AuthorizationResult> authorize(List<Payment> payments) {
+            batchSizes.add(payments.size());
+            entered.countDown();
+            try {
+                release.await();
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return payments.stream().collect(Collectors.toMap(Payment::getTransactionId,
+                    payment -> new AuthorizationResult(payment.getTransactionId(), approve.apply(payment), null)));
+        }
+
+        @Override
+        public boolean refund(Payment payment) {
+            return true;
+        }
+    }
+}
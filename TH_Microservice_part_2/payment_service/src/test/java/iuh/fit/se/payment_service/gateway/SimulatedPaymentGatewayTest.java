@@ -0,0 +1,43 @@
+package iuh.fit.se.payment_service.gateway;
+
+import iuh.fit.se.payment_service.model.Payment;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulatedPaymentGatewayTest {
+
+    private final SimulatedPaymentGateway gateway = new SimulatedPaymentGateway(Duration.ZERO);
+
+    @Test
+    void repeatedTransactionGetsItsFirstAuthorization() {
+        Payment payment = payment("tx-1");
+        AuthorizationResult first = gateway.authorize(List.of(payment)).get("tx-1");
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(first, gateway.authorize(List.of(payment)).get("tx-1"));
+        }
+    }
+
+    @Test
+    void refundThatWentThroughIsNotRefusedWhenSentAgain() {
+        Payment payment = payment("tx-2");
+        while (!gateway.refund(payment)) {
+            // A failed refund is not remembered, so it is simply tried again
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(gateway.refund(payment));
+        }
+    }
+
+    private static Payment payment(String transactionId) {
+        Payment payment = new Payment();
+        payment.setTransactionId(transactionId);
+        return payment;
+    }
+}
@@ -0,0 +1,72 @@
+package iuh.fit.se.payment_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.FeignException;
+import feign.Request;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FallbackReplayerTest {
+
+    private static final Request REQUEST = Request.create(Request.HttpMethod.GET, "http://order-service/api/orders/1",
+            Map.of(), Request.Body.empty(), null);
+
+    private final PaymentService paymentService = mock(PaymentService.class);
+    private final FallbackReplayer replayer = new FallbackReplayer(paymentService, new ObjectMapper(),
+            CircuitBreakerRegistry.ofDefaults(), RateLimiterRegistry.ofDefaults());
+
+    @Test
+    void unreadableRecordIsDroppedAndTheRestReplayed() {
+        replayer.replay(List.of(record(0, "not json"), record(1, "{\"id\":2}")));
+
+        verify(paymentService).completePendingPayment(2L);
+    }
+
+    @Test
+    void operationTheOrderServiceRejectsIsDropped() {
+        when(paymentService.completePendingPayment(1L))
+                .thenThrow(new FeignException.NotFound("Not Found", REQUEST, null, Map.of()));
+
+        replayer.replay(List.of(record(0, "{\"id\":1}"), record(1, "{\"id\":2}")));
+
+        verify(paymentService).completePendingPayment(2L);
+    }
+
+    @Test
+    void otherFailuresRedeliverTheRestOfThePollFromTheFailedRecord() {
+        when(paymentService.completePendingPayment(2L)).thenThrow(new IllegalStateException("gateway timed out"));
+
+        BatchListenerFailedException failure = assertThrows(BatchListenerFailedException.class,
+                () -> replayer.replay(List.of(record(0, "{\"id\":1}"), record(1, "{\"id\":2}"))));
+
+        assertEquals(1, failure.getIndex());
+    }
+
+    @Test
+    void serverErrorsAndThrottlingAreRedeliveredToo() {
+        when(paymentService.completePendingPayment(1L))
+                .thenThrow(new FeignException.ServiceUnavailable("Unavailable", REQUEST, null, Map.of()));
+        when(paymentService.completePendingPayment(2L))
+                .thenThrow(new FeignException.TooManyRequests("Too Many Requests", REQUEST, null, Map.of()));
+
+        assertThrows(BatchListenerFailedException.class, () -> replayer.replay(List.of(record(0, "{\"id\":1}"))));
+        assertThrows(BatchListenerFailedException.class, () -> replayer.replay(List.of(record(0, "{\"id\":2}"))));
+    }
+
+    private static ConsumerRecord<String, byte[]> record(long offset, String value) {
+        return new ConsumerRecord<>("payment-fallback", 0, offset, "key", value.getBytes(StandardCharsets.UTF_8));
+    }
+}
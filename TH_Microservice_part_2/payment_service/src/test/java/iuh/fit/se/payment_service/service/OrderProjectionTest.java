@@ -0,0 +1,96 @@
+package iuh.fit.se.payment_service.service;
+
+import iuh.fit.se.payment_service.client.OrderClient;
+import iuh.fit.se.payment_service.client.OrderDto;
+import iuh.fit.se.payment_service.event.OrderEvent;
+import iuh.fit.se.payment_service.repository.OrderSnapshotRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(OrderProjection.class)
+class OrderProjectionTest {
+
+    @Autowired
+    private OrderProjection orderProjection;
+
+    @Autowired
+    private OrderSnapshotRepository orderSnapshotRepository;
+
+    @MockitoBean
+    private OrderClient orderClient;
+
+    @Test
+    void orderEventInsertsASnapshotThatIsServedLocally() {
+        orderProjection.handleOrderEvent(event(1L, "PENDING", 40.0));
+
+        OrderDto order = orderProjection.getOrder(1L);
+
+        assertEquals("PENDING", order.getStatus());
+        assertEquals(40.0, order.getTotalAmount());
+        verify(orderClient, never()).getOrderById(any());
+    }
+
+    @Test
+    void laterEventOfTheSameOrderReplacesItsSnapshot() {
+        orderProjection.handleOrderEvent(event(1L, "PENDING", 40.0));
+        orderProjection.handleOrderEvent(event(1L, "PAID", 45.0));
+
+        OrderDto order = orderProjection.getOrder(1L);
+
+        assertEquals("PAID", order.getStatus());
+        assertEquals(45.0, order.getTotalAmount());
+        assertEquals(1, orderSnapshotRepository.count());
+    }
+
+    @Test
+    void orderWithoutEventsIsLoadedOnceFromTheOrderService() {
+        when(orderClient.getOrderById(2L)).thenReturn(ResponseEntity.ok(order(2L, "PENDING")));
+
+        orderProjection.getOrder(2L);
+        OrderDto order = orderProjection.getOrder(2L);
+
+        assertEquals("PENDING", order.getStatus());
+        verify(orderClient, times(1)).getOrderById(2L);
+    }
+
+    @Test
+    void retriedEventTakesTheCurrentStateFromTheOrderService() {
+        orderProjection.handleOrderEvent(event(3L, "PENDING", 40.0));
+        when(orderClient.getOrderById(3L)).thenReturn(ResponseEntity.ok(order(3L, "SHIPPED")));
+
+        orderProjection.retryOrderEvent(event(3L, "PENDING", 40.0));
+
+        assertEquals("SHIPPED", orderSnapshotRepository.findById(3L).orElseThrow().getStatus());
+    }
+
+    @Test
+    void unknownOrderFails() {
+        when(orderClient.getOrderById(4L)).thenReturn(ResponseEntity.notFound().build());
+
+        assertThrows(RuntimeException.class, () -> orderProjection.getOrder(4L));
+    }
+
+    private static OrderEvent event(long orderId, String status, double totalAmount) {
+        return new OrderEvent(orderId, 7L, LocalDateTime.now(), status, totalAmount, List.of());
+    }
+
+    private static OrderDto order(long orderId, String status) {
+        return new OrderDto(orderId, 7L, LocalDateTime.now(), status, List.of(), 40.0);
+    }
+}
@@ -0,0 +1,216 @@
+package iuh.fit.se.payment_service.service;
+
+import iuh.fit.se.payment_service.client.OrderClient;
+import iuh.fit.se.payment_service.client.OrderDto;
+import iuh.fit.se.payment_service.config.AsyncConfig;
+import iuh.fit.se.payment_service.gateway.AuthorizationResult;
+import iuh.fit.se.payment_service.gateway.PaymentGateway;
+import iuh.fit.se.payment_service.gateway.PaymentGatewayBatcher;
+import iuh.fit.se.payment_service.model.Payment;
+import iuh.fit.se.payment_service.repository.PaymentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Payments are stored from the async client-call threads, so the rows must be committed for the test to see
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({PaymentService.class, AsyncConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentServiceTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @MockitoBean
+    private OrderClient orderClient;
+
+    @MockitoBean
+    private OrderStatusUpdater orderStatusUpdater;
+
+    @MockitoBean
+    private OrderProjection orderProjection;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @MockitoBean
+    private PaymentGatewayBatcher gatewayBatcher;
+
+    @MockitoBean
+    private PaymentGateway paymentGateway;
+
+    @BeforeEach
+    void setUp() {
+        when(orderProjection.getOrder(anyLong())).thenAnswer(invocation ->
+                new OrderDto(invocation.getArgument(0), 7L, LocalDateTime.now(), "PENDING", List.of(), 40.0));
+        when(gatewayBatcher.authorize(any())).thenAnswer(invocation -> {
+            Payment payment = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(new AuthorizationResult(payment.getTransactionId(), true, null));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void paymentIsAuthorizedOnceAndCompletedWhenTheOrderIsUpdated() {
+        when(orderStatusUpdater.updateOrderStatus(1L, "PAID")).thenReturn(CompletableFuture.completedFuture(null));
+
+        Payment payment = paymentService.processPayment(request(1L, null)).join();
+
+        assertEquals("COMPLETED", payment.getStatus());
+        assertEquals(40.0, payment.getAmount());
+        verify(gatewayBatcher, times(1)).authorize(any());
+        verify(outboxService).publish(eq("payment-completed"), eq("1"), any());
+    }
+
+    @Test
+    void paymentForAnOrderRejectedForMissingStockFailsWithoutTheGateway() {
+        when(orderProjection.getOrder(4L))
+                .thenReturn(new OrderDto(4L, 7L, LocalDateTime.now(), "REJECTED", List.of(), 40.0));
+
+        Payment payment = paymentService.processPayment(request(4L, null)).join();
+
+        assertEquals("FAILED", payment.getStatus());
+        verify(gatewayBatcher, never()).authorize(any());
+        verify(orderStatusUpdater, never()).updateOrderStatus(any(), any());
+        verify(outboxService).publish(eq("payment-failed"), eq("4"), any());
+    }
+
+    @Test
+    void authorizedPaymentWhoseOrderUpdateFailsIsReplayedWithoutTheGateway() {
+        when(orderStatusUpdater.updateOrderStatus(1L, "PAID"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("order-service down")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        Payment parked = paymentService.processPayment(request(1L, null)).join();
+        assertEquals("AUTHORIZED", parked.getStatus());
+        assertEquals("AUTHORIZED", paymentRepository.findById(parked.getId()).orElseThrow().getStatus());
+        verify(outboxService).publish(eq("payment-fallback"), eq("1"), any());
+
+        Payment completed = paymentService.completePendingPayment(parked.getId()).orElseThrow();
+
+        assertEquals("COMPLETED", completed.getStatus());
+        verify(gatewayBatcher, times(1)).authorize(any());
+        verify(orderStatusUpdater, times(2)).updateOrderStatus(1L, "PAID");
+    }
+
+    @Test
+    void paymentWithoutAGatewayResultIsReplayedUnderItsOriginalTransactionId() {
+        doReturn(CompletableFuture.failedFuture(new IllegalStateException("gateway timed out")))
+                .doAnswer(invocation -> {
+                    Payment payment = invocation.getArgument(0);
+                    return CompletableFuture.completedFuture(
+                            new AuthorizationResult(payment.getTransactionId(), true, null));
+                })
+                .when(gatewayBatcher).authorize(any());
+        when(orderStatusUpdater.updateOrderStatus(1L, "PAID")).thenReturn(CompletableFuture.completedFuture(null));
+
+        Payment parked = paymentService.processPayment(request(1L, null)).join();
+        assertEquals("PENDING_CONFIRMATION", parked.getStatus());
+        assertNotNull(parked.getTransactionId());
+
+        Payment completed = paymentService.completePendingPayment(parked.getId()).orElseThrow();
+
+        assertEquals("COMPLETED", completed.getStatus());
+        assertEquals(List.of(parked.getTransactionId()), authorizedTransactionIds().stream().distinct().toList());
+    }
+
+    @Test
+    void refundWhoseOrderUpdateFailsIsReplayedWithoutTheGateway() {
+        Payment payment = paymentRepository.save(completedPayment(2L));
+        when(paymentGateway.refund(any())).thenReturn(true);
+        when(orderStatusUpdater.updateOrderStatus(2L, "REFUNDED"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("order-service down")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        Payment parked = paymentService.refundPayment(payment.getId());
+        assertEquals("REFUNDED", parked.getStatus());
+        verify(outboxService).publish(eq("payment-refunded"), eq("2"), any());
+        verify(outboxService).publish(eq("refund-fallback"), eq("2"), any());
+
+        paymentService.completePendingRefund(payment.getId()).orElseThrow();
+
+        verify(paymentGateway, times(1)).refund(any());
+        verify(orderStatusUpdater, times(2)).updateOrderStatus(2L, "REFUNDED");
+        verify(outboxService, times(1)).publish(eq("payment-refunded"), eq("2"), any());
+    }
+
+    @Test
+    void refundTheGatewayFailedOnIsRetriedAtTheGateway() {
+        Payment payment = paymentRepository.save(completedPayment(3L));
+        when(paymentGateway.refund(any()))
+                .thenThrow(new IllegalStateException("gateway down"))
+                .thenReturn(true);
+        when(orderStatusUpdater.updateOrderStatus(3L, "REFUNDED")).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals("REFUND_PENDING", paymentService.refundPayment(payment.getId()).getStatus());
+
+        assertEquals("REFUNDED", paymentService.completePendingRefund(payment.getId()).orElseThrow().getStatus());
+        verify(paymentGateway, times(2)).refund(any());
+    }
+
+    @Test
+    void requestsWithTheSameIdempotencyKeyShareTheirTransactionId() {
+        when(orderStatusUpdater.updateOrderStatus(1L, "PAID")).thenReturn(CompletableFuture.completedFuture(null));
+
+        paymentService.processPayment(request(1L, "key-1")).join();
+        paymentService.processPayment(request(1L, "key-1")).join();
+
+        List<String> transactionIds = authorizedTransactionIds();
+        assertEquals(2, transactionIds.size());
+        assertEquals(transactionIds.get(0), transactionIds.get(1));
+        assertEquals(1, paymentRepository.count());
+    }
+
+    private List<String> authorizedTransactionIds() {
+        ArgumentCaptor<Payment> authorized = ArgumentCaptor.forClass(Payment.class);
+        verify(gatewayBatcher, atLeastOnce()).authorize(authorized.capture());
+        return authorized.getAllValues().stream().map(Payment::getTransactionId).toList();
+    }
+
+    private static Payment completedPayment(long orderId) {
+        Payment payment = request(orderId, null);
+        payment.setAmount(40.0);
+        payment.setStatus("COMPLETED");
+        payment.setTransactionId("tx-" + orderId);
+        payment.setPaymentDate(LocalDateTime.now());
+        return payment;
+    }
+
+    private static Payment request(long orderId, String idempotencyKey) {
+        Payment payment = new Payment();
+        payment.setOrderId(orderId);
+        payment.setPaymentMethod("CARD");
+        payment.setIdempotencyKey(idempotencyKey);
+        return payment;
+    }
+}
@@ -0,0 +1,30 @@
+package iuh.fit.se.shipping_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Connection pool shared by the Feign clients ({@code app.feign.*}). Each entry of
+ * {@code app.feign.clients} caps the connections to that client's url; the connect and read
+ * timeouts of a client are bound through {@code spring.cloud.openfeign.client.config.<name>}.
+ */
+@ConfigurationProperties("app.feign")
+public record FeignHttpClientProperties(Integer maxConnections,
+                                        Integer maxConnectionsPerRoute,
+                                        Duration idleTimeout,
+                                        Duration timeToLive,
+                                        Map<String, Client> clients) {
+
+    public FeignHttpClientProperties {
+        maxConnections = maxConnections == null ? 200 : maxConnections;
+        maxConnectionsPerRoute = maxConnectionsPerRoute == null ? 20 : maxConnectionsPerRoute;
+        idleTimeout = idleTimeout == null ? Duration.ofSeconds(30) : idleTimeout;
+        timeToLive = timeToLive == null ? Duration.ofMinutes(5) : timeToLive;
+        clients = clients == null ? Map.of() : clients;
+    }
+
+    public record Client(String url, Integer maxConnections) {
+    }
+}
@@ -0,0 +1,50 @@
+package iuh.fit.se.shipping_service.config;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Failed events leave the main partitions straight away. A record whose listener throws is moved to that
+ * listener's own topic, where a @RetryableTopic listener retries it through {@code <topic>-retry-N} with
+ * growing delays and finally parks it on {@code <topic>-dlt}. Nothing is retried on the main consumer thread.
+ */
+@Configuration
+public class KafkaRetryConfig {
+
+    public static final String ORDER_PROJECTION_TOPIC = "shipping-order-projection";
+    public static final String PAYMENT_COMPLETED_TOPIC = "shipping-payment-completed";
+    public static final String DLT_SUFFIX = "-dlt";
+
+    // Main topic -> the topic its listener retries from
+    private static final Map<String, String> RETRY_TOPICS = Map.of(
+            "order-created", ORDER_PROJECTION_TOPIC,
+            "order-updated", ORDER_PROJECTION_TOPIC,
+            "order-cancelled", ORDER_PROJECTION_TOPIC,
+            "payment-completed", PAYMENT_COMPLETED_TOPIC);
+
+    public static Set<String> deadLetterTopics() {
+        return RETRY_TOPICS.values().stream().map(topic -> topic + DLT_SUFFIX).collect(Collectors.toSet());
+    }
+
+    @Bean
+    public CommonErrorHandler kafkaErrorHandler(KafkaTemplate<?, ?> kafkaTemplate) {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate, (record, ex) -> {
+            String retryTopic = RETRY_TOPICS.getOrDefault(record.topic(), record.topic());
+            // A record that cannot be decoded fails the same way on every attempt
+            boolean undecodable = ex instanceof DeserializationException || ex.getCause() instanceof DeserializationException;
+            return new TopicPartition(undecodable ? retryTopic + DLT_SUFFIX : retryTopic, -1);
+        });
+        return new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L));
+    }
+}
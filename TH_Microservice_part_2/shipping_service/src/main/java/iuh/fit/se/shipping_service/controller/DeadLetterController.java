@@ -0,0 +1,42 @@
+package iuh.fit.se.shipping_service.controller;
+
+import iuh.fit.se.shipping_service.config.KafkaRetryConfig;
+import iuh.fit.se.shipping_service.service.DeadLetterReplayer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/admin/dlt")
+public class DeadLetterController {
+
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final DeadLetterReplayer deadLetterReplayer;
+
+    @Autowired
+    public DeadLetterController(DeadLetterReplayer deadLetterReplayer) {
+        this.deadLetterReplayer = deadLetterReplayer;
+    }
+
+    @GetMapping
+    public ResponseEntity<Set<String>> getDeadLetterTopics() {
+        return ResponseEntity.ok(KafkaRetryConfig.deadLetterTopics());
+    }
+
+    // Moves up to maxRecords parked records back to the listener's retry topic, batchSize per poll
+    @PostMapping("/{topic}/replay")
+    public ResponseEntity<Map<String, Object>> replay(@PathVariable String topic,
+                                                      @RequestParam(defaultValue = "100") int batchSize,
+                                                      @RequestParam(defaultValue = "1000") int maxRecords) {
+        if (!KafkaRetryConfig.deadLetterTopics().contains(topic)) {
+            return ResponseEntity.notFound().build();
+        }
+        int replayed = deadLetterReplayer.replay(topic, Math.min(Math.max(batchSize, 1), MAX_BATCH_SIZE),
+                Math.max(maxRecords, 1));
+        return ResponseEntity.ok(Map.of("topic", topic, "replayed", replayed));
+    }
+}
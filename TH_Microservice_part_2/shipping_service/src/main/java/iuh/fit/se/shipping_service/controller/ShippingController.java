@@ -1,12 +1,14 @@
 package iuh.fit.se.shipping_service.controller;
 
-
+import com.fasterxml.jackson.databind.ObjectMapper;
 import iuh.fit.se.shipping_service.model.Shipment;
 import iuh.fit.se.shipping_service.service.ShippingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -15,16 +17,37 @@ import java.util.concurrent.CompletableFuture;
 @RequestMapping("/shipments")
 public class ShippingController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final ShippingService shippingService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public ShippingController(ShippingService shippingService) {
+    public ShippingController(ShippingService shippingService,
+                              ObjectMapper objectMapper) {
         this.shippingService = shippingService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public ResponseEntity<List<Shipment>> getAllShipments() {
-        return ResponseEntity.ok(shippingService.getAllShipments());
+    public ResponseEntity<List<Shipment>> getAllShipments(@RequestParam(required = false) Long after,
+                                                          @RequestParam(defaultValue = "100") int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        List<Shipment> shipments = shippingService.getShipments(after, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (shipments.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(shipments.get(shipments.size() - 1).getId()));
+        }
+        return response.body(shipments);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllShipments() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> shippingService.writeAllShipments(
+                        objectMapper.writer().withRootValueSeparator("\n").writeValues(outputStream)));
     }
 
     @GetMapping("/{id}")
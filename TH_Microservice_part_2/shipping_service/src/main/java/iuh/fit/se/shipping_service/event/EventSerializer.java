@@ -0,0 +1,43 @@
+package iuh.fit.se.shipping_service.event;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+
+// Kafka value serializer: EventCodec events in their compact form, payloads that are already bytes as they are,
+// anything else as JSON. Records moved to the retry and dead-letter topics are sent back through it.
+public class EventSerializer implements Serializer<Object> {
+
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonSerializer.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data == null) {
+            return null;
+        }
+        if (data instanceof byte[] bytes) {
+            return bytes;
+        }
+        if (EventCodec.supports(data)) {
+            return EventCodec.encode(data);
+        }
+        return headers == null ? jsonSerializer.serialize(topic, data) : jsonSerializer.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+}
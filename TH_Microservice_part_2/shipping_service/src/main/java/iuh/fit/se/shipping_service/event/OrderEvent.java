@@ -0,0 +1,15 @@
+package iuh.fit.se.shipping_service.event;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * order-created / order-updated / order-cancelled as the consumers read them: the order's header and,
+ * per line, the product, quantity and price. Encoded with {@link EventCodec}.
+ */
+public record OrderEvent(long orderId, long customerId, LocalDateTime orderDate, String status, double totalAmount,
+                         List<Item> items) {
+
+    public record Item(long productId, int quantity, double price) {
+    }
+}
@@ -0,0 +1,7 @@
+package iuh.fit.se.shipping_service.event;
+
+/**
+ * payment-completed / payment-failed as the consumers read them. Encoded with {@link EventCodec}.
+ */
+public record PaymentEvent(long paymentId, long orderId, String status, double amount) {
+}
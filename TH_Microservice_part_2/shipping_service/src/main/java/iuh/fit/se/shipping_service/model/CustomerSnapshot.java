@@ -0,0 +1,27 @@
+package iuh.fit.se.shipping_service.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Local copy of a customer; refreshed from the customer service once older than the configured ttl
+@Entity
+@Table(name = "customer_snapshot")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerSnapshot {
+    @Id
+    private Long id;
+
+    private String name;
+    private String email;
+    private String phone;
+    private String address;
+    private LocalDateTime refreshedAt;
+}
@@ -0,0 +1,9 @@
+package iuh.fit.se.shipping_service.repository;
+
+import iuh.fit.se.shipping_service.model.CustomerSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CustomerSnapshotRepository extends JpaRepository<CustomerSnapshot, Long> {
+}
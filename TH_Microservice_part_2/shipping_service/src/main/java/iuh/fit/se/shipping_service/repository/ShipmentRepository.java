@@ -2,14 +2,27 @@ package iuh.fit.se.shipping_service.repository;
 
 
 import iuh.fit.se.shipping_service.model.Shipment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ShipmentRepository extends JpaRepository<Shipment, Long> {
     List<Shipment> findByOrderId(Long orderId);
     Optional<Shipment> findByTrackingNumber(String trackingNumber);
-}
\ No newline at end of file
+
+    List<Shipment> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Shipment> streamAllByOrderByIdAsc();
+}
@@ -0,0 +1,77 @@
+package iuh.fit.se.shipping_service.service;
+
+import iuh.fit.se.shipping_service.client.CustomerClient;
+import iuh.fit.se.shipping_service.client.CustomerDto;
+import iuh.fit.se.shipping_service.model.CustomerSnapshot;
+import iuh.fit.se.shipping_service.repository.CustomerSnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Customers as last fetched from the customer service. The customer service publishes no events,
+ * so copies are refreshed once older than the ttl; a stale copy is used while the service is down.
+ */
+@Service
+public class CustomerProjection {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerProjection.class);
+    private final CustomerSnapshotRepository customerSnapshotRepository;
+    private final CustomerClient customerClient;
+    private final Duration ttl;
+
+    @Autowired
+    public CustomerProjection(CustomerSnapshotRepository customerSnapshotRepository,
+                              CustomerClient customerClient,
+                              @Value("${app.projection.customer-ttl:10m}") Duration ttl) {
+        this.customerSnapshotRepository = customerSnapshotRepository;
+        this.customerClient = customerClient;
+        this.ttl = ttl;
+    }
+
+    public CustomerDto getCustomer(Long customerId) {
+        Optional<CustomerSnapshot> snapshot = customerSnapshotRepository.findById(customerId);
+        if (snapshot.isPresent() && snapshot.get().getRefreshedAt().isAfter(LocalDateTime.now().minus(ttl))) {
+            return toDto(snapshot.get());
+        }
+
+        try {
+            return loadCustomer(customerId);
+        } catch (RuntimeException e) {
+            if (snapshot.isEmpty()) {
+                throw e;
+            }
+            logger.warn("Using stale customer snapshot {}: {}", customerId, e.getMessage());
+            return toDto(snapshot.get());
+        }
+    }
+
+    private CustomerDto loadCustomer(Long customerId) {
+        var customerResponse = customerClient.getCustomerById(customerId);
+        if (!customerResponse.getStatusCode().is2xxSuccessful() || customerResponse.getBody() == null) {
+            throw new RuntimeException("Customer not found: " + customerId);
+        }
+
+        CustomerDto customer = customerResponse.getBody();
+        try {
+            customerSnapshotRepository.save(new CustomerSnapshot(customerId, customer.getName(), customer.getEmail(),
+                    customer.getPhone(), customer.getAddress(), LocalDateTime.now()));
+        } catch (DataIntegrityViolationException e) {
+            // Another shipment refreshed the same customer concurrently
+            logger.debug("Customer snapshot {} already stored", customerId);
+        }
+        return customer;
+    }
+
+    private CustomerDto toDto(CustomerSnapshot snapshot) {
+        return new CustomerDto(snapshot.getId(), snapshot.getName(), snapshot.getEmail(),
+                snapshot.getPhone(), snapshot.getAddress());
+    }
+}
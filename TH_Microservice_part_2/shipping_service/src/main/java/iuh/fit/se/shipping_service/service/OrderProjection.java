@@ -0,0 +1,95 @@
+package iuh.fit.se.shipping_service.service;
+
+import iuh.fit.se.shipping_service.client.OrderClient;
+import iuh.fit.se.shipping_service.client.OrderDto;
+import iuh.fit.se.shipping_service.config.KafkaRetryConfig;
+import iuh.fit.se.shipping_service.event.OrderEvent;
+import iuh.fit.se.shipping_service.model.OrderSnapshot;
+import iuh.fit.se.shipping_service.repository.OrderSnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Orders as seen through the order-* events. Lookups are answered locally; the order service
+ * is only called for an order whose events have not arrived yet.
+ */
+@Service
+public class OrderProjection {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderProjection.class);
+    private final OrderSnapshotRepository orderSnapshotRepository;
+    private final OrderClient orderClient;
+
+    @Autowired
+    public OrderProjection(OrderSnapshotRepository orderSnapshotRepository, OrderClient orderClient) {
+        this.orderSnapshotRepository = orderSnapshotRepository;
+        this.orderClient = orderClient;
+    }
+
+    public OrderDto getOrder(Long orderId) {
+        return orderSnapshotRepository.findById(orderId)
+                .map(this::toDto)
+                .orElseGet(() -> loadOrder(orderId));
+    }
+
+    private OrderDto loadOrder(Long orderId) {
+        var orderResponse = orderClient.getOrderById(orderId);
+        if (!orderResponse.getStatusCode().is2xxSuccessful() || orderResponse.getBody() == null) {
+            throw new RuntimeException("Order not found: " + orderId);
+        }
+
+        OrderDto order = orderResponse.getBody();
+        try {
+            orderSnapshotRepository.save(new OrderSnapshot(order.getId(), order.getCustomerId(), order.getOrderDate(),
+                    order.getStatus(), order.getTotalAmount(), LocalDateTime.now()));
+        } catch (DataIntegrityViolationException e) {
+            // The order event was projected in the meantime
+            logger.debug("Order snapshot {} already stored", orderId);
+        }
+        return order;
+    }
+
+    @KafkaListener(id = "shipping-order-projection", topics = {"order-created", "order-updated", "order-cancelled"},
+            groupId = "shipping-group")
+    @Transactional
+    public void handleOrderEvent(OrderEvent event) {
+        // Events of one order share a partition, so the latest event wins
+        orderSnapshotRepository.save(new OrderSnapshot(event.orderId(), event.customerId(), event.orderDate(),
+                event.status(), event.totalAmount(), LocalDateTime.now()));
+    }
+
+    // Events that failed on the main topics, retried off the main partitions; see KafkaRetryConfig
+    @RetryableTopic(attempts = "${app.kafka.retry.attempts:4}", numPartitions = "${app.kafka.retry.partitions:3}",
+            backoff = @Backoff(delayExpression = "${app.kafka.retry.delay:1000}",
+                    multiplierExpression = "${app.kafka.retry.multiplier:5}",
+                    maxDelayExpression = "${app.kafka.retry.max-delay:60000}"),
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            dltTopicSuffix = KafkaRetryConfig.DLT_SUFFIX, kafkaTemplate = "kafkaTemplate")
+    @KafkaListener(id = "shipping-order-projection-retry", topics = KafkaRetryConfig.ORDER_PROJECTION_TOPIC,
+            groupId = "shipping-group")
+    @Transactional
+    public void retryOrderEvent(OrderEvent event) {
+        // Later events of the order may have been projected in the meantime, so take its current state instead
+        loadOrder(event.orderId());
+    }
+
+    private OrderDto toDto(OrderSnapshot snapshot) {
+        OrderDto order = new OrderDto();
+        order.setId(snapshot.getId());
+        order.setCustomerId(snapshot.getCustomerId());
+        order.setOrderDate(snapshot.getOrderDate());
+        order.setStatus(snapshot.getStatus());
+        order.setTotalAmount(snapshot.getTotalAmount());
+        return order;
+    }
+}
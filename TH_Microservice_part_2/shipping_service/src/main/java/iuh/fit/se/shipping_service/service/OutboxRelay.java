@@ -0,0 +1,150 @@
+package iuh.fit.se.shipping_service.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.shipping_service.model.OutboxEvent;
+import iuh.fit.se.shipping_service.repository.OutboxEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Component
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+    private static final TypeReference<Map<String, Object>> EVENT_TYPE = new TypeReference<>() {};
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Duration claimTimeout;
+    private final Duration retention;
+
+    @Autowired
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       KafkaTemplate<String, Object> kafkaTemplate,
+                       TransactionTemplate transactionTemplate,
+                       ObjectMapper objectMapper,
+                       @Value("${app.outbox.batch-size:500}") int batchSize,
+                       @Value("${app.outbox.send-timeout:10s}") Duration sendTimeout,
+                       @Value("${app.outbox.claim-timeout:1m}") Duration claimTimeout,
+                       @Value("${app.outbox.retention:1d}") Duration retention) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.claimTimeout = claimTimeout;
+        this.retention = retention;
+    }
+
+    // Claims a batch in its own short transaction, so no row lock or connection is held while Kafka acknowledges.
+    // The whole batch is sent before waiting, under one send-timeout deadline; rows that were not acknowledged
+    // are released for the next run, and a claim left by a relay that died expires after claim-timeout.
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval:200}")
+    public void relay() {
+        List<OutboxEvent> batch = claimBatch();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            sends.add(send(event));
+        }
+        kafkaTemplate.flush();
+        awaitAll(sends);
+
+        List<Long> sentIds = new ArrayList<>(batch.size());
+        List<Long> failedIds = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            CompletableFuture<SendResult<String, Object>> send = sends.get(i);
+            if (!send.isDone()) {
+                failedIds.add(event.getId());
+                logger.warn("Outbox event {} to topic {} not acknowledged within {}", event.getId(), event.getTopic(),
+                        sendTimeout);
+                continue;
+            }
+            try {
+                send.join();
+                sentIds.add(event.getId());
+            } catch (CompletionException | CancellationException e) {
+                failedIds.add(event.getId());
+                logger.warn("Failed to relay outbox event {} to topic {}: {}", event.getId(), event.getTopic(),
+                        e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!sentIds.isEmpty()) {
+                outboxEventRepository.markSent(sentIds, LocalDateTime.now());
+            }
+            if (!failedIds.isEmpty()) {
+                outboxEventRepository.release(failedIds);
+            }
+        });
+    }
+
+    private List<OutboxEvent> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> batch = outboxEventRepository.findClaimable(now.minus(claimTimeout), Limit.of(batchSize));
+            if (!batch.isEmpty()) {
+                outboxEventRepository.claim(batch.stream().map(OutboxEvent::getId).toList(), now);
+            }
+            return batch;
+        });
+    }
+
+    private void awaitAll(List<CompletableFuture<SendResult<String, Object>>> sends) {
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                    .get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Failed and unacknowledged sends are told apart per row by the caller
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.purge-interval:3600000}")
+    @Transactional
+    public void purgeSentEvents() {
+        outboxEventRepository.deleteSentBefore(LocalDateTime.now().minus(retention));
+    }
+
+    private CompletableFuture<SendResult<String, Object>> send(OutboxEvent event) {
+        try {
+            Map<String, Object> payload = objectMapper.readValue(event.getPayload(), EVENT_TYPE);
+            return kafkaTemplate.send(event.getTopic(), event.getMessageKey(), payload);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
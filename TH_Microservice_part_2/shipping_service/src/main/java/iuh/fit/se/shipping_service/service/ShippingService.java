@@ -1,29 +1,42 @@
 package iuh.fit.se.shipping_service.service;
 
+import com.fasterxml.jackson.databind.SequenceWriter;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import io.github.resilience4j.retry.annotation.Retry;
 import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
-import iuh.fit.se.shipping_service.client.CustomerClient;
 import iuh.fit.se.shipping_service.client.CustomerDto;
 import iuh.fit.se.shipping_service.client.OrderClient;
 import iuh.fit.se.shipping_service.client.OrderDto;
+import iuh.fit.se.shipping_service.config.AsyncConfig;
+import iuh.fit.se.shipping_service.config.KafkaRetryConfig;
+import iuh.fit.se.shipping_service.event.PaymentEvent;
 import iuh.fit.se.shipping_service.model.Shipment;
 import iuh.fit.se.shipping_service.repository.ShipmentRepository;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Limit;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 @Service
 public class ShippingService {
@@ -31,22 +44,46 @@ public class ShippingService {
     private static final Logger logger = LoggerFactory.getLogger(ShippingService.class);
     private final ShipmentRepository shipmentRepository;
     private final OrderClient orderClient;
-    private final CustomerClient customerClient;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OrderProjection orderProjection;
+    private final CustomerProjection customerProjection;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor clientCallExecutor;
+    private final EntityManager entityManager;
 
     @Autowired
     public ShippingService(ShipmentRepository shipmentRepository,
                            OrderClient orderClient,
-                           CustomerClient customerClient,
-                           KafkaTemplate<String, Object> kafkaTemplate) {
+                           OrderProjection orderProjection,
+                           CustomerProjection customerProjection,
+                           OutboxService outboxService,
+                           TransactionTemplate transactionTemplate,
+                           @Qualifier(AsyncConfig.CLIENT_CALL_EXECUTOR) Executor clientCallExecutor,
+                           EntityManager entityManager) {
         this.shipmentRepository = shipmentRepository;
         this.orderClient = orderClient;
-        this.customerClient = customerClient;
-        this.kafkaTemplate = kafkaTemplate;
+        this.orderProjection = orderProjection;
+        this.customerProjection = customerProjection;
+        this.outboxService = outboxService;
+        this.transactionTemplate = transactionTemplate;
+        this.clientCallExecutor = clientCallExecutor;
+        this.entityManager = entityManager;
     }
 
-    public List<Shipment> getAllShipments() {
-        return shipmentRepository.findAll();
+    public List<Shipment> getShipments(Long afterId, int limit) {
+        return shipmentRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0L : afterId, Limit.of(limit));
+    }
+
+    // NDJSON export of all shipments in id order, written and detached one at a time
+    @Transactional(readOnly = true)
+    public void writeAllShipments(SequenceWriter lines) throws IOException {
+        try (lines; Stream<Shipment> shipments = shipmentRepository.streamAllByOrderByIdAsc()) {
+            for (Iterator<Shipment> iterator = shipments.iterator(); iterator.hasNext(); ) {
+                Shipment shipment = iterator.next();
+                lines.write(shipment);
+                entityManager.detach(shipment);
+            }
+        }
     }
 
     public Optional<Shipment> getShipmentById(Long id) {
@@ -68,55 +105,88 @@ public class ShippingService {
     @Transactional
     public CompletableFuture<Shipment> createShipment(Shipment shipment) {
         return CompletableFuture.supplyAsync(() -> {
-            // Validate order exists
-            var orderResponse = orderClient.getOrderById(shipment.getOrderId());
-            if (!orderResponse.getStatusCode().is2xxSuccessful()) {
-                throw new RuntimeException("Order not found: " + shipment.getOrderId());
-            }
+            Shipment savedShipment = isStoredPending(shipment) ? shipment : saveNewShipment(shipment);
 
-            OrderDto order = orderResponse.getBody();
+            // Update order status
+            orderClient.updateOrderStatus(shipment.getOrderId(), "SHIPPING");
 
-            // Get customer address
-            var customerResponse = customerClient.getCustomerById(order.getCustomerId());
-            if (!customerResponse.getStatusCode().is2xxSuccessful()) {
-                throw new RuntimeException("Customer not found: " + order.getCustomerId());
-            }
+            return savedShipment;
+        }, clientCallExecutor);
+    }
 
-            CustomerDto customer = customerResponse.getBody();
+    // Re-drives a shipment parked by createShipmentFallback. A PENDING one was stored before its order status
+    // update failed, so only the update is repeated; one that moved on is left as it is
+    public Optional<Shipment> completePendingShipment(Long id) {
+        return shipmentRepository.findById(id)
+                .filter(shipment -> "PENDING_CONFIRMATION".equals(shipment.getStatus())
+                        || "PENDING".equals(shipment.getStatus()))
+                .map(shipment -> {
+                    Shipment savedShipment = "PENDING".equals(shipment.getStatus()) ? shipment : saveNewShipment(shipment);
 
-            // Set shipment details
-            shipment.setTrackingNumber(generateTrackingNumber());
-            shipment.setStatus("PENDING");
-            shipment.setShippingAddress(customer.getAddress());
-            shipment.setCreatedAt(LocalDateTime.now());
-            shipment.setUpdatedAt(LocalDateTime.now());
-            shipment.setEstimatedDelivery(LocalDateTime.now().plusDays(3));
+                    // Update order status
+                    orderClient.updateOrderStatus(shipment.getOrderId(), "SHIPPING");
 
-            Shipment savedShipment = shipmentRepository.save(shipment);
+                    return savedShipment;
+                });
+    }
 
-            // Update order status
-            orderClient.updateOrderStatus(shipment.getOrderId(), "SHIPPING");
+    private Shipment saveNewShipment(Shipment shipment) {
+        // Validate order exists; served from the local projection when the order events have arrived
+        OrderDto order = orderProjection.getOrder(shipment.getOrderId());
+
+        // Get customer address
+        CustomerDto customer = customerProjection.getCustomer(order.getCustomerId());
+
+        // Set shipment details
+        shipment.setTrackingNumber(generateTrackingNumber());
+        shipment.setStatus("PENDING");
+        shipment.setShippingAddress(customer.getAddress());
+        shipment.setCreatedAt(LocalDateTime.now());
+        shipment.setUpdatedAt(LocalDateTime.now());
+        shipment.setEstimatedDelivery(LocalDateTime.now().plusDays(3));
+
+        // Runs off the request thread, so the shipment row and its event share an explicit transaction
+        return transactionTemplate.execute(status -> {
+            Shipment saved = shipmentRepository.save(shipment);
 
             // Send shipment created event
-            kafkaTemplate.send("shipment-created", savedShipment);
+            outboxService.publish("shipment-created", String.valueOf(saved.getOrderId()), saved);
 
-            return savedShipment;
+            return saved;
         });
     }
 
+    // An earlier attempt stored the shipment and only its order status update failed
+    private boolean isStoredPending(Shipment shipment) {
+        return shipment.getId() != null && shipmentRepository.findById(shipment.getId())
+                .filter(stored -> "PENDING".equals(stored.getStatus())
+                        && stored.getOrderId().equals(shipment.getOrderId()))
+                .isPresent();
+    }
+
     public CompletableFuture<Shipment> createShipmentFallback(Shipment shipment, Exception ex) {
         logger.error("Fallback executed for createShipment. Error: {}", ex.getMessage());
 
+        if (isStoredPending(shipment)) {
+            // Parked as it is, so the replay repeats only the order status update
+            outboxService.publish("shipment-fallback", String.valueOf(shipment.getOrderId()), shipment);
+            return CompletableFuture.completedFuture(shipment);
+        }
+
         // Create a temporary shipment record
         shipment.setTrackingNumber(generateTrackingNumber() + "-TEMP");
         shipment.setStatus("PENDING_CONFIRMATION");
         shipment.setCreatedAt(LocalDateTime.now());
         shipment.setUpdatedAt(LocalDateTime.now());
 
-        Shipment savedShipment = shipmentRepository.save(shipment);
+        Shipment savedShipment = transactionTemplate.execute(status -> {
+            Shipment saved = shipmentRepository.save(shipment);
+
+            // Send to a special topic for manual processing
+            outboxService.publish("shipment-fallback", String.valueOf(saved.getOrderId()), saved);
 
-        // Send to a special topic for manual processing
-        kafkaTemplate.send("shipment-fallback", savedShipment);
+            return saved;
+        });
 
         return CompletableFuture.completedFuture(savedShipment);
     }
@@ -130,27 +200,36 @@ public class ShippingService {
     @Transactional
     public Shipment updateShipmentStatus(Long id, String status) {
         return shipmentRepository.findById(id)
-                .map(shipment -> {
-                    shipment.setStatus(status);
-                    shipment.setUpdatedAt(LocalDateTime.now());
+                .map(shipment -> applyStatus(shipment, status))
+                .orElseThrow(() -> new RuntimeException("Shipment not found: " + id));
+    }
 
-                    if ("DELIVERED".equals(status)) {
-                        shipment.setActualDelivery(LocalDateTime.now());
-                        // Update order status
-                        orderClient.updateOrderStatus(shipment.getOrderId(), "DELIVERED");
-                    } else if ("SHIPPED".equals(status)) {
-                        // Update order status
-                        orderClient.updateOrderStatus(shipment.getOrderId(), "SHIPPED");
-                    }
+    // Re-drives a status update parked by updateShipmentStatusFallback; a shipment that moved on is left as it is
+    public Optional<Shipment> completePendingStatusUpdate(Long id, String status) {
+        return transactionTemplate.execute(transaction -> shipmentRepository.findById(id)
+                .filter(shipment -> (status + "_PENDING").equals(shipment.getStatus()))
+                .map(shipment -> applyStatus(shipment, status)));
+    }
 
-                    Shipment updatedShipment = shipmentRepository.save(shipment);
+    private Shipment applyStatus(Shipment shipment, String status) {
+        shipment.setStatus(status);
+        shipment.setUpdatedAt(LocalDateTime.now());
 
-                    // Send shipment updated event
-                    kafkaTemplate.send("shipment-updated", updatedShipment);
+        if ("DELIVERED".equals(status)) {
+            shipment.setActualDelivery(LocalDateTime.now());
+            // Update order status
+            orderClient.updateOrderStatus(shipment.getOrderId(), "DELIVERED");
+        } else if ("SHIPPED".equals(status)) {
+            // Update order status
+            orderClient.updateOrderStatus(shipment.getOrderId(), "SHIPPED");
+        }
 
-                    return updatedShipment;
-                })
-                .orElseThrow(() -> new RuntimeException("Shipment not found: " + id));
+        Shipment updatedShipment = shipmentRepository.save(shipment);
+
+        // Send shipment updated event
+        outboxService.publish("shipment-updated", String.valueOf(updatedShipment.getOrderId()), updatedShipment);
+
+        return updatedShipment;
     }
 
     public Shipment updateShipmentStatusFallback(Long id, String status, Exception ex) {
@@ -164,7 +243,7 @@ public class ShippingService {
                     Shipment updatedShipment = shipmentRepository.save(shipment);
 
                     // Send to a special topic for manual processing
-                    kafkaTemplate.send("shipment-status-update-fallback", Map.of(
+                    outboxService.publish("shipment-status-update-fallback", String.valueOf(shipment.getOrderId()), Map.of(
                             "shipmentId", id,
                             "status", status,
                             "orderId", shipment.getOrderId()
@@ -175,19 +254,34 @@ public class ShippingService {
                 .orElseThrow(() -> new RuntimeException("Shipment not found: " + id));
     }
 
-    @KafkaListener(topics = "payment-completed", groupId = "shipping-group")
-    public void handlePaymentCompleted(Map<String, Object> paymentData) {
-        try {
-            Long orderId = Long.valueOf(paymentData.get("orderId").toString());
+    // Ships on the consumer thread without the resilience4j retry: a failure moves the event to the retry topics
+    // instead of stalling the partition. See KafkaRetryConfig.
+    @KafkaListener(id = "shipping-payment-completed", topics = "payment-completed", groupId = "shipping-group")
+    public void handlePaymentCompleted(PaymentEvent event) {
+        shipPaidOrder(event.orderId());
+    }
 
+    @RetryableTopic(attempts = "${app.kafka.retry.attempts:4}", numPartitions = "${app.kafka.retry.partitions:3}",
+            backoff = @Backoff(delayExpression = "${app.kafka.retry.delay:1000}",
+                    multiplierExpression = "${app.kafka.retry.multiplier:5}",
+                    maxDelayExpression = "${app.kafka.retry.max-delay:60000}"),
+            topicSuffixingStrategy = TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE,
+            dltTopicSuffix = KafkaRetryConfig.DLT_SUFFIX, kafkaTemplate = "kafkaTemplate")
+    @KafkaListener(id = "shipping-payment-completed-retry", topics = KafkaRetryConfig.PAYMENT_COMPLETED_TOPIC,
+            groupId = "shipping-group")
+    public void retryPaymentCompleted(PaymentEvent event) {
+        shipPaidOrder(event.orderId());
+    }
+
+    // A shipment left by an earlier attempt is reused, so only the order status update is repeated
+    private void shipPaidOrder(Long orderId) {
+        if (shipmentRepository.findByOrderId(orderId).isEmpty()) {
             // Create shipment for the paid order
             Shipment shipment = new Shipment();
             shipment.setOrderId(orderId);
             shipment.setCarrier("DEFAULT_CARRIER");
-
-            createShipment(shipment);
-        } catch (Exception e) {
-            logger.error("Error processing payment-completed event", e);
+            saveNewShipment(shipment);
         }
+        orderClient.updateOrderStatus(orderId, "SHIPPING");
     }
 }
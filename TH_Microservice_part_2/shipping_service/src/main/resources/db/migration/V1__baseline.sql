@@ -0,0 +1,48 @@
+-- Baseline schema. Every statement is idempotent, so it also applies to a schema
+-- that ddl-auto created before Flyway took over (baseline-version 0).
+
+CREATE SEQUENCE IF NOT EXISTS shipment_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS shipment (
+    id                 bigint PRIMARY KEY,
+    order_id           bigint,
+    tracking_number    varchar(255),
+    carrier            varchar(255),
+    status             varchar(255),
+    shipping_address   varchar(255),
+    created_at         timestamp(6),
+    updated_at         timestamp(6),
+    estimated_delivery timestamp(6),
+    actual_delivery    timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS order_snapshot (
+    id           bigint PRIMARY KEY,
+    customer_id  bigint,
+    order_date   timestamp(6),
+    status       varchar(255),
+    total_amount float(53),
+    updated_at   timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS customer_snapshot (
+    id           bigint PRIMARY KEY,
+    name         varchar(255),
+    email        varchar(255),
+    phone        varchar(255),
+    address      varchar(255),
+    refreshed_at timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id          bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    topic       varchar(255),
+    message_key varchar(255),
+    payload     text,
+    created_at  timestamp(6),
+    sent_at     timestamp(6)
+);
+CREATE INDEX IF NOT EXISTS idx_outbox_event_sent_at ON outbox_event (sent_at, id);
+
+-- Rows written with the former identity ids may be ahead of the sequences
+SELECT setval('shipment_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM shipment) + 50, (SELECT last_value FROM shipment_seq)));
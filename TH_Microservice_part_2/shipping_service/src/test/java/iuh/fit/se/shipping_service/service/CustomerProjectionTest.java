@@ -0,0 +1,79 @@
+package iuh.fit.se.shipping_service.service;
+
+import iuh.fit.se.shipping_service.client.CustomerClient;
+import iuh.fit.se.shipping_service.client.CustomerDto;
+import iuh.fit.se.shipping_service.model.CustomerSnapshot;
+import iuh.fit.se.shipping_service.repository.CustomerSnapshotRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.projection.customer-ttl=10m"
+})
+@Import(CustomerProjection.class)
+class CustomerProjectionTest {
+
+    @Autowired
+    private CustomerProjection customerProjection;
+
+    @Autowired
+    private CustomerSnapshotRepository customerSnapshotRepository;
+
+    @MockitoBean
+    private CustomerClient customerClient;
+
+    @Test
+    void freshSnapshotIsServedWithoutCallingTheCustomerService() {
+        store(1L, "Old Street", LocalDateTime.now().minusMinutes(1));
+
+        assertEquals("Old Street", customerProjection.getCustomer(1L).getAddress());
+        verify(customerClient, never()).getCustomerById(any());
+    }
+
+    @Test
+    void expiredSnapshotIsRefreshed() {
+        store(1L, "Old Street", LocalDateTime.now().minusHours(1));
+        when(customerClient.getCustomerById(1L)).thenReturn(ResponseEntity.ok(customer(1L, "New Street")));
+
+        assertEquals("New Street", customerProjection.getCustomer(1L).getAddress());
+        assertEquals("New Street", customerSnapshotRepository.findById(1L).orElseThrow().getAddress());
+    }
+
+    @Test
+    void staleSnapshotIsUsedWhileTheCustomerServiceIsDown() {
+        store(1L, "Old Street", LocalDateTime.now().minusHours(1));
+        when(customerClient.getCustomerById(1L)).thenThrow(new IllegalStateException("customer-service down"));
+
+        assertEquals("Old Street", customerProjection.getCustomer(1L).getAddress());
+    }
+
+    @Test
+    void customerWithoutSnapshotFailsWhileTheCustomerServiceIsDown() {
+        when(customerClient.getCustomerById(2L)).thenThrow(new IllegalStateException("customer-service down"));
+
+        assertThrows(IllegalStateException.class, () -> customerProjection.getCustomer(2L));
+    }
+
+    private void store(Long id, String address, LocalDateTime refreshedAt) {
+        customerSnapshotRepository.save(new CustomerSnapshot(id, "Customer", "c@example.com", "0900000000",
+                address, refreshedAt));
+    }
+
+    private static CustomerDto customer(Long id, String address) {
+        return new CustomerDto(id, "Customer", "c@example.com", "0900000000", address);
+    }
+}
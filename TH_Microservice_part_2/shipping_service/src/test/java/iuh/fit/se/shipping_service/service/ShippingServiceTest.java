@@ -0,0 +1,124 @@
+package iuh.fit.se.shipping_service.service;
+
+import iuh.fit.se.shipping_service.client.CustomerDto;
+import iuh.fit.se.shipping_service.client.OrderClient;
+import iuh.fit.se.shipping_service.client.OrderDto;
+import iuh.fit.se.shipping_service.config.AsyncConfig;
+import iuh.fit.se.shipping_service.model.Shipment;
+import iuh.fit.se.shipping_service.repository.ShipmentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Shipments are stored from the async client-call threads, so the rows must be committed for the test to see
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({ShippingService.class, AsyncConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ShippingServiceTest {
+
+    @Autowired
+    private ShippingService shippingService;
+
+    @Autowired
+    private ShipmentRepository shipmentRepository;
+
+    @MockitoBean
+    private OrderClient orderClient;
+
+    @MockitoBean
+    private OrderProjection orderProjection;
+
+    @MockitoBean
+    private CustomerProjection customerProjection;
+
+    @MockitoBean
+    private OutboxService outboxService;
+
+    @BeforeEach
+    void setUp() {
+        when(orderProjection.getOrder(anyLong())).thenAnswer(invocation ->
+                new OrderDto(invocation.getArgument(0), 7L, LocalDateTime.now(), "PAID", List.of(), 40.0));
+        when(customerProjection.getCustomer(7L)).thenReturn(new CustomerDto(7L, "Ann", "ann@example.com", "1", "Street 1"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        shipmentRepository.deleteAll();
+    }
+
+    @Test
+    void storedShipmentWhoseOrderUpdateFailsIsReplayedWithOnlyTheUpdate() {
+        doThrow(new IllegalStateException("order-service down"))
+                .doReturn(ResponseEntity.ok().build())
+                .when(orderClient).updateOrderStatus(1L, "SHIPPING");
+        Shipment shipment = request(1L);
+
+        assertThrows(CompletionException.class, () -> shippingService.createShipment(shipment).join());
+        Shipment parked = shippingService.createShipmentFallback(shipment, new IllegalStateException("order-service down")).join();
+        String trackingNumber = parked.getTrackingNumber();
+        assertEquals("PENDING", shipmentRepository.findById(parked.getId()).orElseThrow().getStatus());
+
+        Shipment completed = shippingService.completePendingShipment(parked.getId()).orElseThrow();
+
+        assertEquals(trackingNumber, completed.getTrackingNumber());
+        verify(orderClient, times(2)).updateOrderStatus(1L, "SHIPPING");
+        verify(outboxService, times(1)).publish(eq("shipment-created"), eq("1"), any());
+        assertEquals(1, shipmentRepository.count());
+    }
+
+    @Test
+    void retriedCreateReusesTheShipmentAnEarlierAttemptStored() {
+        doThrow(new IllegalStateException("order-service down"))
+                .doReturn(ResponseEntity.ok().build())
+                .when(orderClient).updateOrderStatus(2L, "SHIPPING");
+        Shipment shipment = request(2L);
+
+        assertThrows(CompletionException.class, () -> shippingService.createShipment(shipment).join());
+        shippingService.createShipment(shipment).join();
+
+        verify(outboxService, times(1)).publish(eq("shipment-created"), eq("2"), any());
+        assertEquals(1, shipmentRepository.count());
+    }
+
+    @Test
+    void shipmentParkedBeforeItWasStoredIsCreatedOnReplay() {
+        Shipment parked = shippingService.createShipmentFallback(request(3L), new IllegalStateException("timed out")).join();
+        assertEquals("PENDING_CONFIRMATION", parked.getStatus());
+        when(orderClient.updateOrderStatus(3L, "SHIPPING")).thenReturn(ResponseEntity.ok().build());
+
+        Shipment completed = shippingService.completePendingShipment(parked.getId()).orElseThrow();
+
+        assertEquals("PENDING", completed.getStatus());
+        verify(outboxService).publish(eq("shipment-created"), eq("3"), any());
+        verify(orderClient).updateOrderStatus(3L, "SHIPPING");
+    }
+
+    private static Shipment request(long orderId) {
+        Shipment shipment = new Shipment();
+        shipment.setOrderId(orderId);
+        shipment.setCarrier("GHN");
+        return shipment;
+    }
+}
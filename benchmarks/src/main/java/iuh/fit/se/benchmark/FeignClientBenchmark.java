@@ -0,0 +1,123 @@
+package iuh.fit.se.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import feign.Client;
+import feign.Feign;
+import feign.Request;
+import feign.RequestLine;
+import iuh.fit.se.order_service.config.FeignHttpClientProperties;
+import iuh.fit.se.order_service.config.HttpClientConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A product lookup through Feign from 16 threads at once against a local HTTP server, once over Feign's default
+ * HttpURLConnection client and once over the pooled Apache HttpClient 5 the services now use. The JDK keeps only
+ * http.maxConnections (5) idle connections per host, so under this concurrency most default calls open a new
+ * TCP connection; the connections the server accepted are printed after each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class FeignClientBenchmark {
+
+    private static final int PRODUCT_COUNT = 1000;
+
+    @Param({"default", "pooled"})
+    public String client;
+
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private ProductApi productApi;
+
+    interface ProductApi {
+        @RequestLine("GET /api/products/{id}")
+        String getProductById(@feign.Param("id") long id);
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] body = ("{\"id\":1,\"name\":\"Product\",\"description\":\"" + "x".repeat(512)
+                + "\",\"price\":19.99,\"stockQuantity\":100}").getBytes(StandardCharsets.UTF_8);
+        serverExecutor = Executors.newFixedThreadPool(32);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.setExecutor(serverExecutor);
+        server.createContext("/api/products", exchange -> {
+            connections.add(exchange.getRemoteAddress());
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        String url = "http://localhost:" + server.getAddress().getPort();
+        Client feignClient;
+        if ("pooled".equals(client)) {
+            FeignHttpClientProperties properties = new FeignHttpClientProperties(200, 20, Duration.ofSeconds(30),
+                    Duration.ofMinutes(5), Map.of("product-service", new FeignHttpClientProperties.Client(url, 50)));
+            HttpClientConfig config = new HttpClientConfig();
+            connectionManager = config.feignConnectionManager(properties);
+            httpClient = config.feignHttpClient(connectionManager, properties);
+            feignClient = config.feignClient(httpClient);
+        } else {
+            feignClient = new Client.Default(null, null);
+        }
+        productApi = Feign.builder()
+                .client(feignClient)
+                .options(new Request.Options(1, TimeUnit.SECONDS, 5, TimeUnit.SECONDS, true))
+                .target(ProductApi.class, url);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.printf("%n%s client: %d connections opened%n", client, connections.size());
+        if (httpClient != null) {
+            httpClient.close();
+            connectionManager.close();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public String getProduct() {
+        return productApi.getProductById(ThreadLocalRandom.current().nextLong(1, PRODUCT_COUNT + 1));
+    }
+}
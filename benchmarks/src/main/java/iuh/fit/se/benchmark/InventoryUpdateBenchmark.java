@@ -0,0 +1,107 @@
+package iuh.fit.se.benchmark;
+
+import iuh.fit.se.benchmark.support.InMemoryStore;
+import iuh.fit.se.benchmark.support.Json;
+import iuh.fit.se.benchmark.support.NoOpTransactionManager;
+import iuh.fit.se.inventory_service.client.ProductClient;
+import iuh.fit.se.inventory_service.client.ProductDto;
+import iuh.fit.se.inventory_service.model.InVentoryItem;
+import iuh.fit.se.inventory_service.model.InventorySnapshot;
+import iuh.fit.se.inventory_service.model.InventoryTransaction;
+import iuh.fit.se.inventory_service.model.OutboxEvent;
+import iuh.fit.se.inventory_service.repository.InventoryItemRepository;
+import iuh.fit.se.inventory_service.repository.InventorySnapshotRepository;
+import iuh.fit.se.inventory_service.repository.InventoryTransactionRepository;
+import iuh.fit.se.inventory_service.repository.OutboxEventRepository;
+import iuh.fit.se.inventory_service.service.InventoryLedger;
+import iuh.fit.se.inventory_service.service.InventoryService;
+import iuh.fit.se.inventory_service.service.OutboxService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InventoryService#updateInventory} with the product service stubbed and repositories in memory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InventoryUpdateBenchmark {
+
+    private static final int PRODUCT_COUNT = 1000;
+
+    private final InMemoryStore<InVentoryItem> items = new InMemoryStore<>(InVentoryItem::getId, InVentoryItem::setId);
+    private final InMemoryStore<InventoryTransaction> transactions =
+            new InMemoryStore<>(InventoryTransaction::getId, InventoryTransaction::setId);
+    private final InMemoryStore<InventorySnapshot> snapshots =
+            new InMemoryStore<>(InventorySnapshot::getId, InventorySnapshot::setId);
+    private final InMemoryStore<OutboxEvent> outbox = new InMemoryStore<>(OutboxEvent::getId, OutboxEvent::setId);
+    private InventoryService inventoryService;
+    private long nextProductId;
+
+    @Setup
+    public void setUp() {
+        items.uniqueFinder("findByProductId", InVentoryItem::getProductId);
+        items.uniqueFinder("findLockedByProductId", InVentoryItem::getProductId);
+        snapshots.uniqueFinder("findFirstByProductIdOrderByLedgerSequenceDesc", InventorySnapshot::getProductId);
+
+        InventoryItemRepository itemRepository = items.repository(InventoryItemRepository.class);
+        InventoryTransactionRepository transactionRepository =
+                transactions.repository(InventoryTransactionRepository.class);
+        OutboxService outboxService = new OutboxService(outbox.repository(OutboxEventRepository.class), Json.MAPPER);
+        // Snapshots sum the ledger with a query the in-memory store does not model, so none are taken
+        InventoryLedger inventoryLedger = new InventoryLedger(itemRepository, transactionRepository,
+                snapshots.repository(InventorySnapshotRepository.class), outboxService, Integer.MAX_VALUE);
+
+        inventoryService = new InventoryService(
+                itemRepository,
+                transactionRepository,
+                new StubProductClient(),
+                outboxService,
+                inventoryLedger,
+                new TransactionTemplate(new NoOpTransactionManager()),
+                null);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearStores() {
+        items.clear();
+        transactions.clear();
+        snapshots.clear();
+        outbox.clear();
+    }
+
+    @Benchmark
+    public InVentoryItem updateInventory() {
+        long productId = nextProductId++ % PRODUCT_COUNT + 1;
+        return inventoryService.updateInventory(productId, 5, "IN", "RESTOCK", productId);
+    }
+
+    private static class StubProductClient implements ProductClient {
+
+        @Override
+        public ResponseEntity<ProductDto> getProductById(Long id) {
+            return ResponseEntity.ok(new ProductDto());
+        }
+
+        @Override
+        public ResponseEntity<Void> updateStock(Long id, int quantity) {
+            return ResponseEntity.ok().build();
+        }
+    }
+}
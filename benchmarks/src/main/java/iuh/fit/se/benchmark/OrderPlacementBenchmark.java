@@ -0,0 +1,125 @@
+package iuh.fit.se.benchmark;
+
+import iuh.fit.se.benchmark.support.InMemoryStore;
+import iuh.fit.se.benchmark.support.Json;
+import iuh.fit.se.order_service.client.CustomerClient;
+import iuh.fit.se.order_service.client.CustomerDto;
+import iuh.fit.se.order_service.client.ProductClient;
+import iuh.fit.se.order_service.client.ProductDto;
+import iuh.fit.se.order_service.model.Order;
+import iuh.fit.se.order_service.model.OrderItem;
+import iuh.fit.se.order_service.model.OutboxEvent;
+import iuh.fit.se.order_service.repository.OrderRepository;
+import iuh.fit.se.order_service.repository.OutboxEventRepository;
+import iuh.fit.se.order_service.service.OrderService;
+import iuh.fit.se.order_service.service.OutboxService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * {@link OrderService#createOrder} with the customer and product services stubbed in memory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderPlacementBenchmark {
+
+    private static final int PRODUCT_COUNT = 1000;
+
+    @Param({"1", "10", "50"})
+    public int lines;
+
+    private final InMemoryStore<Order> orders = new InMemoryStore<>(Order::getId, Order::setId);
+    private final InMemoryStore<OutboxEvent> outbox = new InMemoryStore<>(OutboxEvent::getId, OutboxEvent::setId);
+    private ExecutorService clientCallExecutor;
+    private OrderService orderService;
+    private long nextProductId;
+
+    @Setup
+    public void setUp() {
+        clientCallExecutor = Executors.newFixedThreadPool(8);
+        Map<Long, ProductDto> products = LongStream.rangeClosed(1, PRODUCT_COUNT)
+                .mapToObj(id -> new ProductDto(id, "Product " + id, "Benchmark product", 9.99, Integer.MAX_VALUE))
+                .collect(Collectors.toMap(ProductDto::getId, Function.identity()));
+
+        orderService = new OrderService(
+                orders.repository(OrderRepository.class),
+                new StubProductClient(products),
+                id -> ResponseEntity.ok(new CustomerDto(id, "Customer " + id, "customer@example.com", "1 Main Street")),
+                new OutboxService(outbox.repository(OutboxEventRepository.class), Json.MAPPER),
+                clientCallExecutor,
+                Duration.ofSeconds(3),
+                null);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearStores() {
+        orders.clear();
+        outbox.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        clientCallExecutor.shutdown();
+    }
+
+    @Benchmark
+    public Order createOrder() {
+        Order order = new Order();
+        order.setCustomerId(1L);
+        List<OrderItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            OrderItem item = new OrderItem();
+            item.setProductId(nextProductId++ % PRODUCT_COUNT + 1);
+            item.setQuantity(2);
+            items.add(item);
+        }
+        order.setItems(items);
+        return orderService.createOrder(order);
+    }
+
+    private static class StubProductClient implements ProductClient {
+
+        private final Map<Long, ProductDto> products;
+
+        StubProductClient(Map<Long, ProductDto> products) {
+            this.products = products;
+        }
+
+        @Override
+        public ResponseEntity<ProductDto> getProductById(Long id) {
+            return ResponseEntity.ok(products.get(id));
+        }
+
+        @Override
+        public ResponseEntity<List<ProductDto>> getProductsByIds(List<Long> ids) {
+            return ResponseEntity.ok(ids.stream().map(products::get).toList());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package iuh.fit.se.benchmark;
+
+import iuh.fit.se.benchmark.support.RoundTripCountingDataSource;
+import iuh.fit.se.order_service.model.Order;
+import iuh.fit.se.order_service.model.OrderItem;
+import iuh.fit.se.order_service.repository.OrderRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OrderRepository#save} of a new order through Hibernate on an in-memory H2 database.
+ * A JDBC batch size of 1 turns batching off, which costs the same round trips as the old identity ids:
+ * one insert per order and per item. The round trips per order are printed after each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderRepositoryBenchmark {
+
+    @Param({"1", "50"})
+    public int jdbcBatchSize;
+
+    @Param({"20"})
+    public int lines;
+
+    private RoundTripCountingDataSource dataSource;
+    private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+    private OrderRepository orderRepository;
+    private TransactionTemplate transactionTemplate;
+    private long savedOrders;
+    private long saveRoundTrips;
+
+    @Setup
+    public void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:orders-" + jdbcBatchSize + ";DB_CLOSE_DELAY=-1");
+        dataSource = new RoundTripCountingDataSource(h2);
+
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(dataSource);
+        entityManagerFactoryBean.setPackagesToScan(Order.class.getPackageName());
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        // Same naming as Spring Boot, so the schema matches the services' tables
+        entityManagerFactoryBean.setJpaPropertyMap(Map.of(
+                "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                "hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName(),
+                "hibernate.hbm2ddl.auto", "create",
+                "hibernate.jdbc.batch_size", String.valueOf(jdbcBatchSize),
+                "hibernate.order_inserts", "true",
+                "hibernate.order_updates", "true"));
+        entityManagerFactoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+
+        orderRepository = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory))
+                .getRepository(OrderRepository.class);
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+    }
+
+    @Setup(Level.Iteration)
+    public void clearTables() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DELETE FROM order_item");
+        jdbcTemplate.execute("DELETE FROM orders");
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%njdbcBatchSize=%d: %.2f JDBC round trips per order of %d lines%n",
+                jdbcBatchSize, (double) saveRoundTrips / savedOrders, lines);
+        entityManagerFactoryBean.destroy();
+    }
+
+    @Benchmark
+    public Order saveOrder() {
+        List<OrderItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            items.add(new OrderItem(null, (long) i + 1, 1, 9.99));
+        }
+        Order order = new Order(null, 1L, LocalDateTime.now(), "PENDING", items, 9.99 * lines);
+        long before = dataSource.roundTrips();
+        Order saved = transactionTemplate.execute(status -> orderRepository.save(order));
+        saveRoundTrips += dataSource.roundTrips() - before;
+        savedOrders++;
+        return saved;
+    }
+}
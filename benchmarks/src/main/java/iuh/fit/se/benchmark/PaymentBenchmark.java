@@ -0,0 +1,117 @@
+package iuh.fit.se.benchmark;
+
+import iuh.fit.se.benchmark.support.InMemoryStore;
+import iuh.fit.se.benchmark.support.Json;
+import iuh.fit.se.benchmark.support.NoOpTransactionManager;
+import iuh.fit.se.payment_service.client.OrderClient;
+import iuh.fit.se.payment_service.client.OrderDto;
+import iuh.fit.se.payment_service.gateway.PaymentGatewayBatcher;
+import iuh.fit.se.payment_service.gateway.SimulatedPaymentGateway;
+import iuh.fit.se.payment_service.model.OrderSnapshot;
+import iuh.fit.se.payment_service.model.OutboxEvent;
+import iuh.fit.se.payment_service.model.Payment;
+import iuh.fit.se.payment_service.repository.OrderSnapshotRepository;
+import iuh.fit.se.payment_service.repository.OutboxEventRepository;
+import iuh.fit.se.payment_service.repository.PaymentRepository;
+import iuh.fit.se.payment_service.service.OrderProjection;
+import iuh.fit.se.payment_service.service.OrderStatusUpdater;
+import iuh.fit.se.payment_service.service.OutboxService;
+import iuh.fit.se.payment_service.service.PaymentService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PaymentService#processPayment} end to end, including the async hand-off, with the order service stubbed.
+ * Orders cycle over a fixed set, so after the first pass they are served from the order projection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentBenchmark {
+
+    private static final int ORDER_COUNT = 1000;
+
+    private final InMemoryStore<Payment> payments = new InMemoryStore<>(Payment::getId, Payment::setId);
+    private final InMemoryStore<OrderSnapshot> orderSnapshots = new InMemoryStore<>(OrderSnapshot::getId, OrderSnapshot::setId);
+    private final InMemoryStore<OutboxEvent> outbox = new InMemoryStore<>(OutboxEvent::getId, OutboxEvent::setId);
+    private ExecutorService clientCallExecutor;
+    private PaymentGatewayBatcher gatewayBatcher;
+    private PaymentService paymentService;
+    private long nextOrderId;
+
+    @Setup
+    public void setUp() {
+        clientCallExecutor = Executors.newFixedThreadPool(8);
+        SimulatedPaymentGateway paymentGateway = new SimulatedPaymentGateway(Duration.ZERO);
+        // No batching wait: a single benchmark thread would otherwise just measure max-wait
+        gatewayBatcher = new PaymentGatewayBatcher(paymentGateway, new SimpleMeterRegistry(), 50, Duration.ZERO, 10000, 4);
+        StubOrderClient orderClient = new StubOrderClient();
+        paymentService = new PaymentService(
+                payments.repository(PaymentRepository.class),
+                new OrderStatusUpdater(orderClient, clientCallExecutor),
+                new OrderProjection(orderSnapshots.repository(OrderSnapshotRepository.class), orderClient),
+                new OutboxService(outbox.repository(OutboxEventRepository.class), Json.MAPPER),
+                gatewayBatcher,
+                paymentGateway,
+                new TransactionTemplate(new NoOpTransactionManager()),
+                clientCallExecutor,
+                null,
+                Duration.ofMillis(1500));
+    }
+
+    @Setup(Level.Iteration)
+    public void clearStores() {
+        payments.clear();
+        outbox.clear();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        gatewayBatcher.shutdown();
+        clientCallExecutor.shutdown();
+    }
+
+    @Benchmark
+    public Payment processPayment() {
+        Payment payment = new Payment();
+        payment.setOrderId(nextOrderId++ % ORDER_COUNT + 1);
+        payment.setPaymentMethod("CREDIT_CARD");
+        return paymentService.processPayment(payment).join();
+    }
+
+    private static class StubOrderClient implements OrderClient {
+
+        @Override
+        public ResponseEntity<OrderDto> getOrderById(Long id) {
+            return ResponseEntity.ok(new OrderDto(id, 1L, LocalDateTime.now(), "PENDING", List.of(), 49.95));
+        }
+
+        @Override
+        public ResponseEntity<OrderDto> updateOrderStatus(Long id, String status) {
+            return ResponseEntity.ok(new OrderDto(id, 1L, LocalDateTime.now(), status, List.of(), 49.95));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package iuh.fit.se.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import iuh.fit.se.benchmark.support.Json;
+import iuh.fit.se.order_service.event.OrderEvent;
+import iuh.fit.se.order_service.model.Order;
+import iuh.fit.se.order_service.model.OrderItem;
+import iuh.fit.se.payment_service.event.PaymentEvent;
+import iuh.fit.se.payment_service.model.Payment;
+import iuh.fit.se.shipping_service.model.Shipment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON encoding of the entities the services used to publish and the {@code Map<String, Object>} decoding
+ * plus field extraction their listeners did, next to the compact {@code EventCodec} events that replaced
+ * them on the order and payment topics. Payload sizes are printed at teardown.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int lines;
+
+    private Order order;
+    private Payment payment;
+    private Shipment shipment;
+    private byte[] orderCreatedEvent;
+    private byte[] paymentCompletedEvent;
+    private JsonDeserializer<Map<String, Object>> eventDeserializer;
+    private byte[] compactOrderCreatedEvent;
+    private byte[] compactPaymentCompletedEvent;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        LocalDateTime now = LocalDateTime.now();
+
+        List<OrderItem> items = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            items.add(new OrderItem((long) i + 1, (long) i + 100, 2, 9.99));
+        }
+        order = new Order(42L, 7L, now, "PENDING", items, 19.98 * lines);
+        payment = new Payment(11L, 42L, 19.98 * lines, "CREDIT_CARD", "COMPLETED",
+                "5f0c1c3e-8b7e-4a4f-9a57-1f0e4c3b2a19", now, "checkout-42");
+        shipment = new Shipment(5L, 42L, "TRK-5F0C1C3E", "DEFAULT_CARRIER", "PENDING", "1 Main Street",
+                now, now, now.plusDays(3), null);
+
+        orderCreatedEvent = Json.MAPPER.writeValueAsBytes(order);
+        paymentCompletedEvent = Json.MAPPER.writeValueAsBytes(payment);
+        // Same deserializer the consumers are configured with
+        eventDeserializer = new JsonDeserializer<>(new TypeReference<Map<String, Object>>() {
+        }, Json.MAPPER, false);
+
+        compactOrderCreatedEvent = iuh.fit.se.order_service.event.EventCodec.encode(OrderEvent.of(order));
+        compactPaymentCompletedEvent = iuh.fit.se.payment_service.event.EventCodec.encode(PaymentEvent.of(payment));
+    }
+
+    @TearDown
+    public void printPayloadSizes() {
+        System.out.printf("%n%d lines: order-created %d bytes as JSON, %d compact; payment-completed %d bytes as JSON, %d compact%n",
+                lines, orderCreatedEvent.length, compactOrderCreatedEvent.length,
+                paymentCompletedEvent.length, compactPaymentCompletedEvent.length);
+    }
+
+    @Benchmark
+    public byte[] serializeOrder() throws JsonProcessingException {
+        return Json.MAPPER.writeValueAsBytes(order);
+    }
+
+    @Benchmark
+    public byte[] serializePayment() throws JsonProcessingException {
+        return Json.MAPPER.writeValueAsBytes(payment);
+    }
+
+    @Benchmark
+    public byte[] serializeShipment() throws JsonProcessingException {
+        return Json.MAPPER.writeValueAsBytes(shipment);
+    }
+
+    @Benchmark
+    public byte[] encodeOrderEvent() {
+        return iuh.fit.se.order_service.event.EventCodec.encode(OrderEvent.of(order));
+    }
+
+    @Benchmark
+    public byte[] encodePaymentEvent() {
+        return iuh.fit.se.payment_service.event.EventCodec.encode(PaymentEvent.of(payment));
+    }
+
+    // What the inventory listener did with order-created before the compact events
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void parseOrderCreated(Blackhole blackhole) {
+        Map<String, Object> orderData = eventDeserializer.deserialize("order-created", orderCreatedEvent);
+        Long orderId = Long.valueOf(orderData.get("id").toString());
+        List<Map<String, Object>> items = (List<Map<String, Object>>) orderData.get("items");
+
+        for (Map<String, Object> item : items) {
+            blackhole.consume(Long.valueOf(item.get("productId").toString()));
+            blackhole.consume(Integer.valueOf(item.get("quantity").toString()));
+        }
+        blackhole.consume(orderId);
+    }
+
+    // What ShippingService.handlePaymentCompleted did before the compact events
+    @Benchmark
+    public Long parsePaymentCompleted() {
+        Map<String, Object> paymentData = eventDeserializer.deserialize("payment-completed", paymentCompletedEvent);
+        return Long.valueOf(paymentData.get("orderId").toString());
+    }
+
+    // Decoded the way inventory-service receives order-created now
+    @Benchmark
+    public void decodeOrderCreated(Blackhole blackhole) {
+        var event = (iuh.fit.se.inventory_service.event.OrderEvent)
+                iuh.fit.se.inventory_service.event.EventCodec.decode(compactOrderCreatedEvent);
+        for (var item : event.items()) {
+            blackhole.consume(item.productId());
+            blackhole.consume(item.quantity());
+        }
+        blackhole.consume(event.orderId());
+    }
+
+    @Benchmark
+    public long decodePaymentCompleted() {
+        var event = (iuh.fit.se.shipping_service.event.PaymentEvent)
+                iuh.fit.se.shipping_service.event.EventCodec.decode(compactPaymentCompletedEvent);
+        return event.orderId();
+    }
+}
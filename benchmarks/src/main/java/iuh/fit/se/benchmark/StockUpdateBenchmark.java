@@ -0,0 +1,121 @@
+package iuh.fit.se.benchmark;
+
+import iuh.fit.se.product_service.model.Product;
+import iuh.fit.se.product_service.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One-unit stock decrements of a single hot product from 8 threads on an in-memory H2 database:
+ * the conditional UPDATE behind {@code ProductService.updateStock} next to the findById / check / save
+ * it replaced. The decrements each variant lost to concurrent writers are printed after each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class StockUpdateBenchmark {
+
+    // Enough stock that no run sells out
+    private static final int INITIAL_STOCK = 1_000_000_000;
+
+    @Param({"conditional-update", "read-modify-write"})
+    public String strategy;
+
+    private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+    private ProductRepository productRepository;
+    private TransactionTemplate transactionTemplate;
+    private final LongAdder decrements = new LongAdder();
+    private final LongAdder lostDecrements = new LongAdder();
+    private Long productId;
+
+    @Setup
+    public void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        // Row lock waits are part of what is measured, so let them queue instead of timing out
+        h2.setURL("jdbc:h2:mem:products-" + strategy + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(h2);
+        entityManagerFactoryBean.setPackagesToScan(Product.class.getPackageName());
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        // Same naming as Spring Boot, so the schema matches the service's table
+        entityManagerFactoryBean.setJpaPropertyMap(Map.of(
+                "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                "hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName(),
+                "hibernate.hbm2ddl.auto", "create"));
+        entityManagerFactoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+
+        productRepository = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory))
+                .getRepository(ProductRepository.class);
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+    }
+
+    @Setup(Level.Iteration)
+    public void restock() {
+        decrements.reset();
+        productId = transactionTemplate.execute(status ->
+                productRepository.save(new Product(null, "Hot SKU", "contended", 10.0, INITIAL_STOCK)).getId());
+    }
+
+    @TearDown(Level.Iteration)
+    public void countLostDecrements() {
+        int stock = productRepository.findById(productId).orElseThrow().getStockQuantity();
+        lostDecrements.add(decrements.sum() - (INITIAL_STOCK - stock));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%s: %d decrements lost to concurrent writers%n", strategy, lostDecrements.sum());
+        entityManagerFactoryBean.destroy();
+    }
+
+    @Benchmark
+    public boolean decrementStock() {
+        Boolean decremented = "conditional-update".equals(strategy)
+                ? transactionTemplate.execute(status -> productRepository.decrementStock(productId, 1) == 1)
+                : transactionTemplate.execute(status -> {
+                    Product product = productRepository.findById(productId).orElseThrow();
+                    if (product.getStockQuantity() < 1) {
+                        return false;
+                    }
+                    product.setStockQuantity(product.getStockQuantity() - 1);
+                    productRepository.save(product);
+                    return true;
+                });
+        if (Boolean.TRUE.equals(decremented)) {
+            decrements.increment();
+        }
+        return Boolean.TRUE.equals(decremented);
+    }
+}
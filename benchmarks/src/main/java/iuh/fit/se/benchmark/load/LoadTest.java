@@ -0,0 +1,148 @@
+package iuh.fit.se.benchmark.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop HTTP load test that steps up the number of concurrent clients and reports p50/p99 latency,
+ * error rate and the highest concurrency that still meets the latency SLO.
+ * <p>
+ * Run it once against a service started with {@code VIRTUAL_THREADS_ENABLED=false} and once with
+ * {@code VIRTUAL_THREADS_ENABLED=true}, then compare the two tables:
+ * <pre>
+ * java -Dload.label=platform -cp target/benchmarks.jar iuh.fit.se.benchmark.load.LoadTest
+ * java -Dload.label=virtual  -cp target/benchmarks.jar iuh.fit.se.benchmark.load.LoadTest
+ * </pre>
+ * Settings (system properties): {@code load.url}, {@code load.method}, {@code load.body},
+ * {@code load.concurrency} (comma separated steps), {@code load.duration} (seconds per step),
+ * {@code load.slo-ms} and {@code load.max-error-rate}.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String label = System.getProperty("load.label", "run");
+        URI uri = URI.create(System.getProperty("load.url", "http://localhost:8084/payments"));
+        String method = System.getProperty("load.method", "POST");
+        String body = System.getProperty("load.body", "{\"orderId\":1,\"paymentMethod\":\"CREDIT_CARD\"}");
+        int[] steps = Arrays.stream(System.getProperty("load.concurrency", "50,100,200,400,800").split(","))
+                .mapToInt(step -> Integer.parseInt(step.trim()))
+                .toArray();
+        Duration stepDuration = Duration.ofSeconds(Long.getLong("load.duration", 30));
+        long sloMillis = Long.getLong("load.slo-ms", 2000);
+        double maxErrorRate = Double.parseDouble(System.getProperty("load.max-error-rate", "0.01"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newCachedThreadPool())
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .method(method, "GET".equals(method) ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        System.out.printf("%s %s [%s], %ds per step, SLO p99 <= %dms%n", method, uri, label, stepDuration.toSeconds(), sloMillis);
+        System.out.printf("%-12s %10s %10s %10s %10s %10s %10s%n", "concurrency", "requests", "req/s", "errors", "p50 ms", "p99 ms", "max ms");
+
+        int maxConcurrency = 0;
+        for (int concurrency : steps) {
+            StepResult result = runStep(client, request, concurrency, stepDuration);
+            System.out.printf("%-12d %10d %10.1f %9.2f%% %10.1f %10.1f %10.1f%n",
+                    concurrency, result.requests(), result.requests() / (double) stepDuration.toSeconds(),
+                    result.errorRate() * 100, result.percentile(0.50), result.percentile(0.99), result.percentile(1.0));
+            if (result.errorRate() <= maxErrorRate && result.percentile(0.99) <= sloMillis) {
+                maxConcurrency = concurrency;
+            }
+        }
+        System.out.printf("[%s] max concurrency within SLO: %s%n", label, maxConcurrency == 0 ? "none" : maxConcurrency);
+        System.exit(0);
+    }
+
+    private static StepResult runStep(HttpClient client, HttpRequest request, int concurrency, Duration duration)
+            throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        List<Future<Worker>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(workers.submit(() -> new Worker().run(client, request, deadline)));
+        }
+
+        long[] latencies = new long[0];
+        int errors = 0;
+        for (Future<Worker> future : futures) {
+            Worker worker = future.get();
+            long[] merged = Arrays.copyOf(latencies, latencies.length + worker.count);
+            System.arraycopy(worker.latencies, 0, merged, latencies.length, worker.count);
+            latencies = merged;
+            errors += worker.errors;
+        }
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+
+        Arrays.sort(latencies);
+        return new StepResult(latencies, errors);
+    }
+
+    private static class Worker {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        Worker run(HttpClient client, HttpRequest request, long deadline) {
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                boolean failed;
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    failed = response.statusCode() >= 400;
+                } catch (Exception e) {
+                    failed = true;
+                }
+                record(System.nanoTime() - start);
+                if (failed) {
+                    errors++;
+                }
+            }
+            return this;
+        }
+
+        private void record(long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+    }
+
+    private record StepResult(long[] latencies, int errors) {
+
+        long requests() {
+            return latencies.length;
+        }
+
+        double errorRate() {
+            return latencies.length == 0 ? 0 : errors / (double) latencies.length;
+        }
+
+        // Nearest-rank percentile in milliseconds
+        double percentile(double quantile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * latencies.length) - 1;
+            return latencies[Math.max(rank, 0)] / 1_000_000.0;
+        }
+    }
+}
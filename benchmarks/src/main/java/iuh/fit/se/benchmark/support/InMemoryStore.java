@@ -0,0 +1,107 @@
+package iuh.fit.se.benchmark.support;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Map-backed stand-in for a Spring Data repository, so the service code runs without a database.
+ * Only the CRUD methods the hot paths use are implemented; derived finders are registered by name.
+ */
+public class InMemoryStore<T> {
+
+    private final Map<Long, T> rows = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Function<T, Long> idGetter;
+    private final BiConsumer<T, Long> idSetter;
+    private final Map<String, Function<Object[], Object>> finders = new HashMap<>();
+    private final Map<Function<T, ?>, Map<Object, T>> uniqueIndexes = new HashMap<>();
+
+    public InMemoryStore(Function<T, Long> idGetter, BiConsumer<T, Long> idSetter) {
+        this.idGetter = idGetter;
+        this.idSetter = idSetter;
+    }
+
+    public InMemoryStore<T> finder(String methodName, Function<Object[], Object> finder) {
+        finders.put(methodName, finder);
+        return this;
+    }
+
+    // Registers a single-argument finder answered from a hash index, like a unique column index
+    public InMemoryStore<T> uniqueFinder(String methodName, Function<T, ?> key) {
+        Map<Object, T> index = new ConcurrentHashMap<>();
+        uniqueIndexes.put(key, index);
+        return finder(methodName, args -> Optional.ofNullable(index.get(args[0])));
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public void clear() {
+        rows.clear();
+        uniqueIndexes.values().forEach(Map::clear);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> R repository(Class<R> repositoryType) {
+        return (R) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType},
+                (proxy, method, args) -> invoke(method, args));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object invoke(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "save":
+                return save((T) args[0]);
+            case "saveAll": {
+                List<T> saved = new ArrayList<>();
+                for (T entity : (Iterable<T>) args[0]) {
+                    saved.add(save(entity));
+                }
+                return saved;
+            }
+            case "findById":
+                return Optional.ofNullable(rows.get((Long) args[0]));
+            case "findAll":
+                return new ArrayList<>(rows.values());
+            case "count":
+                return (long) rows.size();
+            case "deleteAll":
+                clear();
+                return null;
+            case "toString":
+                return "InMemoryStore" + rows.keySet();
+            case "hashCode":
+                return System.identityHashCode(this);
+            case "equals":
+                return false;
+            default:
+                Function<Object[], Object> finder = finders.get(method.getName());
+                if (finder == null) {
+                    throw new UnsupportedOperationException("Not supported in memory: " + method.getName());
+                }
+                return finder.apply(args);
+        }
+    }
+
+    private T save(T entity) {
+        Long id = idGetter.apply(entity);
+        // Like a generated id: null or 0 means a new row
+        if (id == null || id == 0L) {
+            id = sequence.incrementAndGet();
+            idSetter.accept(entity, id);
+        }
+        rows.put(id, entity);
+        uniqueIndexes.forEach((key, index) -> index.put(key.apply(entity), entity));
+        return entity;
+    }
+}
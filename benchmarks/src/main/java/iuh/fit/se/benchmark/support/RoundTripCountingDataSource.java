@@ -0,0 +1,71 @@
+package iuh.fit.se.benchmark.support;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the statement executions that reach the database. An executeBatch counts once,
+ * however many rows it carries, so the count is the number of JDBC round trips.
+ */
+public class RoundTripCountingDataSource extends DelegatingDataSource {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final AtomicLong roundTrips = new AtomicLong();
+
+    public RoundTripCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    public long roundTrips() {
+        return roundTrips.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    private Connection counting(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    return result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())
+                            ? counting(method.getReturnType(), result)
+                            : result;
+                });
+    }
+
+    private Object counting(Class<?> statementType, Object statement) {
+        return Proxy.newProxyInstance(statementType.getClassLoader(), new Class<?>[]{statementType},
+                (proxy, method, args) -> {
+                    if (EXECUTE_METHODS.contains(method.getName())) {
+                        roundTrips.incrementAndGet();
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}